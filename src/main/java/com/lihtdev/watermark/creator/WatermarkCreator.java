@@ -6,6 +6,10 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * 水印创建接口
@@ -24,4 +28,26 @@ public interface WatermarkCreator extends Closeable {
      */
     void create(InputStream inputStream, OutputStream outputStream, Watermark watermark) throws IOException;
 
+    /**
+     * 创建水印（默认打开文件输入流读取，支持随机读取的实现类可重写此方法）
+     *
+     * @param path         文件路径
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     */
+    default void create(Path path, OutputStream outputStream, Watermark watermark) throws IOException {
+        create(Files.newInputStream(path), outputStream, watermark);
+    }
+
+    /**
+     * 创建水印（默认包装为输入流读取，支持随机读取的实现类可重写此方法）
+     *
+     * @param fileChannel  文件通道
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     */
+    default void create(FileChannel fileChannel, OutputStream outputStream, Watermark watermark) throws IOException {
+        create(Channels.newInputStream(fileChannel), outputStream, watermark);
+    }
+
 }
@@ -6,15 +6,38 @@ import com.lihtdev.watermark.creator.WatermarkCreator;
 import com.lihtdev.watermark.exception.WatermarkException;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.util.ImageUtils;
+import com.lihtdev.watermark.util.OoxmlPackageWriter;
+import com.lihtdev.watermark.util.OoxmlUtils;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.poi.hssf.usermodel.*;
+import org.apache.poi.ooxml.POIXMLRelation;
+import org.apache.poi.openxml4j.opc.PackageNamespaces;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.ClientAnchor;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.util.Units;
 import org.apache.poi.xssf.usermodel.*;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetBackgroundPicture;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 给 Excel 文件添加水印
@@ -26,6 +49,38 @@ import java.io.OutputStream;
  */
 public class ExcelWatermarkCreator implements WatermarkCreator {
 
+    /**
+     * 电子表格绘图的命名空间
+     */
+    private static final String SPREADSHEET_DRAWING_NAMESPACE = "http://schemas.openxmlformats.org/drawingml/2006/spreadsheetDrawing";
+
+    /**
+     * DrawingML 的命名空间
+     */
+    private static final String DRAWINGML_NAMESPACE = "http://schemas.openxmlformats.org/drawingml/2006/main";
+
+    /**
+     * 新建的绘图部件
+     */
+    private static final String EMPTY_DRAWING = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<xdr:wsDr xmlns:xdr=\"" + SPREADSHEET_DRAWING_NAMESPACE + "\" xmlns:a=\"" + DRAWINGML_NAMESPACE + "\"></xdr:wsDr>";
+
+    /**
+     * 绘图中形状的 ID
+     */
+    private static final Pattern SHAPE_ID_PATTERN = Pattern.compile("cNvPr[^>]*?\\sid=\"(\\d{1,9})\"");
+
+    /**
+     * 工作表中按 schema 顺序应在 drawing 之后的元素
+     */
+    private static final String[] DRAWING_FOLLOWING_ELEMENTS = {"legacyDrawing", "legacyDrawingHF", "drawingHF", "picture",
+            "oleObjects", "controls", "webPublishItems", "tableParts", "extLst"};
+
+    /**
+     * 工作表中按 schema 顺序应在 picture 之后的元素
+     */
+    private static final String[] PICTURE_FOLLOWING_ELEMENTS = {"oleObjects", "controls", "webPublishItems", "tableParts", "extLst"};
+
     /**
      * 原文件输入流
      */
@@ -41,11 +96,86 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
      */
     private Workbook workbook;
 
+    /**
+     * 重复水印的添加方式
+     */
+    private RepeatMode repeatMode = RepeatMode.PICTURE;
+
+    /**
+     * 是否流式处理（只支持 .xlsx：不加载工作簿，只改写绘图、关系和内容类型部件，工作表逐字节复制，内存占用不随行数增长）
+     */
+    private boolean streaming = false;
+
+    /**
+     * 流式处理时的原文件
+     */
+    private ZipFile zipFile;
+
+    /**
+     * 流式处理输入流时写入的临时文件
+     */
+    private Path tempFile;
+
+    /**
+     * 添加水印后的文件输出流
+     */
+    private OutputStream outputStream;
+
+    public ExcelWatermarkCreator() {
+    }
+
+    /**
+     * 创建 Excel 水印实例
+     *
+     * @param repeatMode 重复水印的添加方式
+     */
+    public ExcelWatermarkCreator(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
     @Override
     public void create(InputStream inputStream, OutputStream outputStream, Watermark watermark) throws IOException {
-        this.inputStream = inputStream;
-        this.workbook = WorkbookFactory.create(inputStream);
+        this.inputStream = FileMagic.prepareToCheckMagic(inputStream);
+        this.outputStream = outputStream;
+        if (streaming && FileMagic.valueOf(this.inputStream) == FileMagic.OOXML) {
+            // zip 文件需要随机读取，先写入临时文件
+            this.tempFile = Files.createTempFile("watermark", ".xlsx");
+            Files.copy(this.inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            this.zipFile = new ZipFile(tempFile.toFile());
+        } else {
+            this.workbook = WorkbookFactory.create(this.inputStream);
+        }
+        setWatermark(watermark);
+    }
 
+    /**
+     * 给本地 Excel 文件添加水印，流式处理时直接随机读取文件
+     *
+     * @param path         文件路径
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    @Override
+    public void create(Path path, OutputStream outputStream, Watermark watermark) throws IOException {
+        if (!streaming || FileMagic.valueOf(path.toFile()) != FileMagic.OOXML) {
+            WatermarkCreator.super.create(path, outputStream, watermark);
+            return;
+        }
+        this.outputStream = outputStream;
+        this.zipFile = new ZipFile(path.toFile());
+        setWatermark(watermark);
+    }
+
+    /**
+     * 设置水印
+     *
+     * @param watermark 水印
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private void setWatermark(Watermark watermark) throws IOException {
         if (watermark instanceof TextWatermark) {
             setTextWatermark((TextWatermark) watermark);
         } else if (watermark instanceof ImageWatermark) {
@@ -55,7 +185,9 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
             setImageWatermark(imageWatermark);
         }
 
-        this.workbook.write(outputStream);
+        if (this.workbook != null) {
+            this.workbook.write(outputStream);
+        }
     }
 
     public void setTextWatermark(TextWatermark textWatermark) throws IOException {
@@ -69,11 +201,16 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
         setImageWatermark(imageWatermark);
     }
 
-    public void setImageWatermark(ImageWatermark imageWatermark) {
+    public void setImageWatermark(ImageWatermark imageWatermark) throws IOException {
+        if (repeatMode != RepeatMode.PICTURE && imageWatermark.getStyle() instanceof RepeatWatermarkStyle) {
+            imageWatermark = createRepeatImageWatermark(imageWatermark);
+        }
         if (this.workbook instanceof HSSFWorkbook) {
             setWatermarkForExcel2003(imageWatermark);
         } else if (this.workbook instanceof XSSFWorkbook) {
             setWatermarkForExcel2007(imageWatermark);
+        } else if (this.zipFile != null) {
+            setStreamingWatermarkForExcel2007(imageWatermark);
         }
     }
 
@@ -81,10 +218,17 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
         this.imageStream = imageWatermark.getImageStream();
         byte[] imageBytes = IoUtil.readBytes(imageStream, true);
         HSSFWorkbook hssfWorkbook = (HSSFWorkbook) this.workbook;
+        // 图片只添加一次，所有工作表的水印都引用同一个图片
+        int pictureIndex = hssfWorkbook.addPicture(imageBytes, getPictureType(imageWatermark));
 
         for (int i = 0; i < hssfWorkbook.getNumberOfSheets(); i++) {
             HSSFSheet sheet = hssfWorkbook.getSheetAt(i);
             HSSFPatriarch patriarch = sheet.createDrawingPatriarch();
+            if (repeatMode != RepeatMode.PICTURE && imageWatermark.getStyle() instanceof RepeatWatermarkStyle) {
+                // 整个重复水印已绘制为一张图片，每个工作表只添加一个图片（.xls 不支持工作表背景）
+                patriarch.createPicture(createSheetImageAnchor(sheet, imageWatermark), pictureIndex);
+                continue;
+            }
 
             int defaultColumnWidth = sheet.getDefaultColumnWidth();
             int defaultRowHeight = sheet.getDefaultRowHeight();
@@ -100,8 +244,7 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
                     for (int col = 0; col < repeatWatermarkStyle.getCols(); col++) {
                         HSSFClientAnchor anchor = new HSSFClientAnchor(0, 0, 0, 0,
                                 (short) col, row, (short) (col + watermarkInCols), row + watermarkInRows);
-                        int index = hssfWorkbook.addPicture(imageBytes, getPictureType(imageWatermark));
-                        HSSFPicture picture = patriarch.createPicture(anchor, index);
+                        HSSFPicture picture = patriarch.createPicture(anchor, pictureIndex);
                         picture.setRotationDegree((short) imageWatermark.getStyle().getFormat().getRotation());
                         picture.resize();
                     }
@@ -114,10 +257,21 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
         this.imageStream = imageWatermark.getImageStream();
         byte[] imageBytes = IoUtil.readBytes(imageStream, true);
         XSSFWorkbook xssfWorkbook = (XSSFWorkbook) this.workbook;
+        // 图片只添加一次，所有工作表的水印都引用同一个图片
+        int pictureIndex = xssfWorkbook.addPicture(imageBytes, getPictureType(imageWatermark));
 
         for (int i = 0; i < xssfWorkbook.getNumberOfSheets(); i++) {
             XSSFSheet sheet = xssfWorkbook.getSheetAt(i);
+            if (repeatMode == RepeatMode.BACKGROUND && imageWatermark.getStyle() instanceof RepeatWatermarkStyle) {
+                setBackgroundPicture(sheet, xssfWorkbook.getAllPictures().get(pictureIndex));
+                continue;
+            }
             XSSFDrawing drawing = sheet.createDrawingPatriarch();
+            if (repeatMode == RepeatMode.SHEET_IMAGE && imageWatermark.getStyle() instanceof RepeatWatermarkStyle) {
+                // 整个重复水印已绘制为一张图片，每个工作表只添加一个图片
+                drawing.createPicture(createSheetImageAnchor(sheet, imageWatermark), pictureIndex);
+                continue;
+            }
 
             int defaultColumnWidth = sheet.getDefaultColumnWidth();
             int defaultRowHeight = sheet.getDefaultRowHeight();
@@ -133,8 +287,7 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
                     for (int col = 0; col < repeatWatermarkStyle.getCols(); col++) {
                         XSSFClientAnchor anchor = new XSSFClientAnchor(0, 0, 0, 0,
                                 col, row, col + watermarkInCols, row + watermarkInRows);
-                        int index = xssfWorkbook.addPicture(imageBytes, getPictureType(imageWatermark));
-                        XSSFPicture picture = drawing.createPicture(anchor, index);
+                        XSSFPicture picture = drawing.createPicture(anchor, pictureIndex);
                         picture.resize();
                     }
                 }
@@ -142,10 +295,355 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
         }
     }
 
+    /**
+     * 流式添加水印：只改写绘图、关系和内容类型部件，其他部件按压缩数据原样复制（不重新压缩），需要引用绘图或背景图片的工作表只改写
+     * &lt;sheetData&gt; 之后的部分
+     * <p>
+     * 工作表已有绘图时在原绘图中添加水印，已有背景图片时替换为水印图片，此时工作表本身不需要改写
+     *
+     * @param imageWatermark 图片水印
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private void setStreamingWatermarkForExcel2007(ImageWatermark imageWatermark) throws IOException {
+        this.imageStream = imageWatermark.getImageStream();
+        byte[] imageBytes = IoUtil.readBytes(imageStream, true);
+        WatermarkStyle watermarkStyle = imageWatermark.getStyle();
+        if (watermarkStyle instanceof PositionWatermarkStyle) {
+            throw new WatermarkException("Excel文件不支持固定位置水印");
+        } else if (!(watermarkStyle instanceof RepeatWatermarkStyle)) {
+            return;
+        }
+        RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
+
+        // 改写或新增的部件（都是较小的 XML 部件），其他部件按压缩数据原样复制
+        OoxmlPackageWriter packageWriter = new OoxmlPackageWriter(zipFile);
+        POIXMLRelation imageRelation = getImageRelation(imageWatermark);
+        String imagePartName = packageWriter.getNewPartName(imageRelation.getDefaultFileName());
+        packageWriter.putPart(imagePartName, imageBytes);
+        Document contentTypes = packageWriter.readXmlPart(OoxmlUtils.CONTENT_TYPES_PART_NAME);
+        OoxmlUtils.addDefaultContentType(contentTypes, imagePartName.substring(imagePartName.lastIndexOf('.') + 1),
+                imageRelation.getContentType());
+
+        for (String worksheetPartName : getWorksheetPartNames(packageWriter)) {
+            Document relationships = packageWriter.readRelationships(worksheetPartName);
+            // 需要在工作表中插入的元素名称和关系 ID
+            String elementName = null;
+            String relationshipId = null;
+            if (repeatMode == RepeatMode.BACKGROUND) {
+                String imageTarget = OoxmlUtils.relativizePartName(worksheetPartName, imagePartName);
+                Element backgroundRelationship = OoxmlUtils.getRelationship(relationships, XSSFRelation.IMAGES.getRelation());
+                if (backgroundRelationship != null) {
+                    backgroundRelationship.setAttribute("Target", imageTarget);
+                } else {
+                    elementName = "picture";
+                    relationshipId = OoxmlUtils.addRelationship(relationships, XSSFRelation.IMAGES.getRelation(), imageTarget);
+                }
+            } else {
+                String drawingPartName;
+                String drawing;
+                Element drawingRelationship = OoxmlUtils.getRelationship(relationships, XSSFRelation.DRAWINGS.getRelation());
+                if (drawingRelationship != null) {
+                    drawingPartName = OoxmlUtils.resolvePartName(worksheetPartName, drawingRelationship.getAttribute("Target"));
+                    try (InputStream drawingStream = packageWriter.getPartInputStream(drawingPartName)) {
+                        drawing = IoUtil.read(drawingStream, StandardCharsets.UTF_8);
+                    }
+                } else {
+                    drawingPartName = packageWriter.getNewPartName(XSSFRelation.DRAWINGS.getDefaultFileName());
+                    drawing = EMPTY_DRAWING;
+                    elementName = "drawing";
+                    relationshipId = OoxmlUtils.addRelationship(relationships, XSSFRelation.DRAWINGS.getRelation(),
+                            OoxmlUtils.relativizePartName(worksheetPartName, drawingPartName));
+                    OoxmlUtils.addOverrideContentType(contentTypes, drawingPartName, XSSFRelation.DRAWINGS.getContentType());
+                }
+                Document drawingRelationships = packageWriter.readRelationships(drawingPartName);
+                String imageRelationshipId = OoxmlUtils.addRelationship(drawingRelationships, XSSFRelation.IMAGES.getRelation(),
+                        OoxmlUtils.relativizePartName(drawingPartName, imagePartName));
+                packageWriter.putPart(drawingPartName, addDrawingAnchors(drawing, imageRelationshipId, imageWatermark, repeatWatermarkStyle)
+                        .getBytes(StandardCharsets.UTF_8));
+                packageWriter.putPart(OoxmlUtils.getRelationshipsPartName(drawingPartName), drawingRelationships);
+            }
+            packageWriter.putPart(OoxmlUtils.getRelationshipsPartName(worksheetPartName), relationships);
+            if (elementName != null) {
+                String worksheetElementName = elementName;
+                String worksheetRelationshipId = relationshipId;
+                packageWriter.putPart(worksheetPartName, partStream -> {
+                    try (InputStream worksheetStream = packageWriter.getPartInputStream(worksheetPartName)) {
+                        copyWorksheet(worksheetStream, partStream, worksheetElementName, worksheetRelationshipId);
+                    }
+                });
+            }
+        }
+        packageWriter.putPart(OoxmlUtils.CONTENT_TYPES_PART_NAME, contentTypes);
+        packageWriter.write(outputStream);
+    }
+
+    /**
+     * 获取所有工作表的部件名称（包的关系 -> 工作簿 -> 工作簿的关系 -> 工作表）
+     *
+     * @param packageWriter OOXML 包写入器
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private List<String> getWorksheetPartNames(OoxmlPackageWriter packageWriter) throws IOException {
+        Document packageRelationships = packageWriter.readXmlPart(OoxmlUtils.PACKAGE_RELATIONSHIPS_PART_NAME);
+        Element workbookRelationship = OoxmlUtils.getRelationship(packageRelationships, PackageRelationshipTypes.CORE_DOCUMENT);
+        if (workbookRelationship == null) {
+            throw new WatermarkException("Excel文件缺少工作簿");
+        }
+        String workbookPartName = OoxmlUtils.resolvePartName("", workbookRelationship.getAttribute("Target"));
+        Document workbookRelationships = packageWriter.readXmlPart(OoxmlUtils.getRelationshipsPartName(workbookPartName));
+        List<String> worksheetPartNames = new ArrayList<>();
+        NodeList nodes = workbookRelationships.getDocumentElement().getElementsByTagNameNS(PackageNamespaces.RELATIONSHIPS, "Relationship");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element relationship = (Element) nodes.item(i);
+            if (XSSFRelation.WORKSHEET.getRelation().equals(relationship.getAttribute("Type"))) {
+                worksheetPartNames.add(OoxmlUtils.resolvePartName(workbookPartName, relationship.getAttribute("Target")));
+            }
+        }
+        return worksheetPartNames;
+    }
+
+    /**
+     * 在绘图中添加水印图片的锚点（锚点上声明所用的命名空间，与原绘图的命名空间前缀无关）
+     * <p>
+     * 使用单元格锚点加图片尺寸定位，不需要读取列宽和行高
+     *
+     * @param drawing              绘图部件
+     * @param imageRelationshipId  图片的关系 ID
+     * @param imageWatermark       图片水印
+     * @param repeatWatermarkStyle 重复水印样式
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private String addDrawingAnchors(String drawing, String imageRelationshipId, ImageWatermark imageWatermark,
+                                     RepeatWatermarkStyle repeatWatermarkStyle) {
+        Matcher idMatcher = SHAPE_ID_PATTERN.matcher(drawing);
+        int shapeId = 0;
+        while (idMatcher.find()) {
+            shapeId = Math.max(shapeId, Integer.parseInt(idMatcher.group(1)));
+        }
+        long cx = (long) imageWatermark.getWidth() * Units.EMU_PER_PIXEL;
+        long cy = (long) imageWatermark.getHeight() * Units.EMU_PER_PIXEL;
+        // 整个重复水印已绘制为一张图片时只添加一个锚点
+        int rows = repeatMode == RepeatMode.PICTURE ? repeatWatermarkStyle.getRows() : 1;
+        int cols = repeatMode == RepeatMode.PICTURE ? repeatWatermarkStyle.getCols() : 1;
+        StringBuilder anchors = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                shapeId++;
+                anchors.append("<xdr:oneCellAnchor xmlns:xdr=\"").append(SPREADSHEET_DRAWING_NAMESPACE)
+                        .append("\" xmlns:a=\"").append(DRAWINGML_NAMESPACE)
+                        .append("\" xmlns:r=\"").append(OoxmlUtils.RELATIONSHIPS_NAMESPACE)
+                        .append("\">");
+                anchors.append("<xdr:from><xdr:col>").append(col).append("</xdr:col><xdr:colOff>0</xdr:colOff><xdr:row>")
+                        .append(row).append("</xdr:row><xdr:rowOff>0</xdr:rowOff></xdr:from>");
+                anchors.append("<xdr:ext cx=\"").append(cx).append("\" cy=\"").append(cy).append("\"/>");
+                anchors.append("<xdr:pic><xdr:nvPicPr><xdr:cNvPr id=\"").append(shapeId).append("\" name=\"Watermark ").append(shapeId)
+                        .append("\"/><xdr:cNvPicPr><a:picLocks noChangeAspect=\"1\"/></xdr:cNvPicPr></xdr:nvPicPr>");
+                anchors.append("<xdr:blipFill><a:blip r:embed=\"").append(imageRelationshipId)
+                        .append("\"/><a:stretch><a:fillRect/></a:stretch></xdr:blipFill>");
+                anchors.append("<xdr:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"").append(cx).append("\" cy=\"").append(cy)
+                        .append("\"/></a:xfrm><a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></xdr:spPr></xdr:pic>");
+                anchors.append("<xdr:clientData/></xdr:oneCellAnchor>");
+            }
+        }
+        int rootEnd = drawing.lastIndexOf("</");
+        return drawing.substring(0, rootEnd) + anchors + drawing.substring(rootEnd);
+    }
+
+    /**
+     * 复制工作表，并在工作表中插入引用绘图或背景图片的元素
+     * <p>
+     * &lt;sheetData&gt; 及之前的部分逐字节复制，只有之后的少量元素读入内存，按 schema 规定的顺序插入新元素
+     *
+     * @param inputStream    工作表输入流
+     * @param outputStream   输出流
+     * @param elementName    插入的元素名称（drawing 或 picture）
+     * @param relationshipId 元素引用的关系 ID
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private void copyWorksheet(InputStream inputStream, OutputStream outputStream, String elementName, String relationshipId)
+            throws IOException {
+        byte[] buffer = new byte[8192];
+        // 当前标签的开头部分（< 之后），只用于判断标签名称
+        byte[] tag = new byte[64];
+        int tagLength = -1;
+        byte previous = 0;
+        String prefix = null;
+        int length;
+        while (prefix == null && (length = inputStream.read(buffer)) != -1) {
+            int copyLength = length;
+            for (int i = 0; i < length; i++) {
+                byte b = buffer[i];
+                if (b == '<') {
+                    tagLength = 0;
+                } else if (b == '>' && tagLength >= 0) {
+                    String tagStart = new String(tag, 0, Math.min(tagLength, tag.length), StandardCharsets.UTF_8);
+                    prefix = getSheetDataEndPrefix(tagStart, previous == '/');
+                    tagLength = -1;
+                    if (prefix != null) {
+                        copyLength = i + 1;
+                        break;
+                    }
+                } else if (tagLength >= 0) {
+                    if (tagLength < tag.length) {
+                        tag[tagLength] = b;
+                    }
+                    tagLength++;
+                }
+                previous = b;
+            }
+            outputStream.write(buffer, 0, copyLength);
+            if (prefix != null) {
+                String tail = new String(buffer, copyLength, length - copyLength, StandardCharsets.UTF_8)
+                        + IoUtil.read(inputStream, StandardCharsets.UTF_8);
+                String element = "<" + prefix + elementName + " xmlns:r=\"" + OoxmlUtils.RELATIONSHIPS_NAMESPACE
+                        + "\" r:id=\"" + relationshipId + "\"/>";
+                int index = getWorksheetElementIndex(tail, prefix, elementName);
+                outputStream.write((tail.substring(0, index) + element + tail.substring(index)).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (prefix == null) {
+            throw new WatermarkException("工作表缺少 sheetData 元素");
+        }
+    }
+
+    /*
+     * 判断标签是否为 sheetData 的结束标签（</sheetData> 或 <sheetData/>），是则返回命名空间前缀（含冒号，无前缀时为空字符串）
+     */
+    private String getSheetDataEndPrefix(String tagStart, boolean emptyElement) {
+        boolean endTag = tagStart.startsWith("/");
+        if (!endTag && !emptyElement) {
+            return null;
+        }
+        String name = (endTag ? tagStart.substring(1) : tagStart).split("[\\s/]", 2)[0];
+        if (!name.equals("sheetData") && !name.endsWith(":sheetData")) {
+            return null;
+        }
+        return name.substring(0, name.length() - "sheetData".length());
+    }
+
+    /*
+     * 获取新元素在 sheetData 之后部分中的插入位置（第一个按 schema 顺序应在新元素之后的元素，或根元素的结束标签）
+     */
+    private int getWorksheetElementIndex(String tail, String prefix, String elementName) {
+        String[] followingElements = "drawing".equals(elementName) ? DRAWING_FOLLOWING_ELEMENTS : PICTURE_FOLLOWING_ELEMENTS;
+        int index = tail.indexOf("</" + prefix + "worksheet");
+        for (String followingElement : followingElements) {
+            Matcher matcher = Pattern.compile("<" + Pattern.quote(prefix + followingElement) + "[\\s/>]").matcher(tail);
+            if (matcher.find() && matcher.start() < index) {
+                index = matcher.start();
+            }
+        }
+        return index;
+    }
+
+    /*
+     * 获取图片类型对应的关系（内容类型和部件名称模板）
+     */
+    private POIXMLRelation getImageRelation(ImageWatermark imageWatermark) {
+        switch (imageWatermark.getType()) {
+            case EMF:
+                return XSSFRelation.IMAGE_EMF;
+            case WMF:
+                return XSSFRelation.IMAGE_WMF;
+            case PICT:
+                return XSSFRelation.IMAGE_PICT;
+            case JPEG:
+                return XSSFRelation.IMAGE_JPEG;
+            case DIB:
+                return XSSFRelation.IMAGE_DIB;
+            default:
+                return XSSFRelation.IMAGE_PNG;
+        }
+    }
+
     private void createImageWatermark(HSSFPatriarch patriarch, ImageWatermark imageWatermark) {
 
     }
 
+    /**
+     * 将整个重复水印绘制为一张图片，作为新的图片水印（样式不变）
+     *
+     * @param imageWatermark 图片水印
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private ImageWatermark createRepeatImageWatermark(ImageWatermark imageWatermark) {
+        this.imageStream = imageWatermark.getImageStream();
+        BufferedImage watermarkImage = ImgUtil.read(imageStream);
+        BufferedImage repeatImage = ImageUtils.createRepeatImage(watermarkImage, imageWatermark.getWidth(), imageWatermark.getHeight(),
+                (RepeatWatermarkStyle) imageWatermark.getStyle());
+        ImageWatermark repeatImageWatermark = new ImageWatermark(ImgUtil.toStream(repeatImage, ImageWatermark.Type.PNG.name()));
+        repeatImageWatermark.setStyle(imageWatermark.getStyle());
+        repeatImageWatermark.setWidth(repeatImage.getWidth());
+        repeatImageWatermark.setHeight(repeatImage.getHeight());
+        repeatImageWatermark.setType(ImageWatermark.Type.PNG);
+        return repeatImageWatermark;
+    }
+
+    /**
+     * 创建从左上角开始、与图片原始尺寸相同的锚点（按列宽和行高计算结束位置，不需要像 resize() 一样解码图片）
+     *
+     * @param sheet          工作表
+     * @param imageWatermark 图片水印
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private ClientAnchor createSheetImageAnchor(Sheet sheet, ImageWatermark imageWatermark) {
+        boolean isExcel2003 = sheet instanceof HSSFSheet;
+        ClientAnchor anchor = workbook.getCreationHelper().createClientAnchor();
+
+        float width = imageWatermark.getWidth();
+        int col = 0;
+        float colWidth;
+        while (width >= (colWidth = sheet.getColumnWidthInPixels(col))) {
+            width -= colWidth;
+            col++;
+        }
+        anchor.setCol2(col);
+        // .xls 的偏移量为单元格宽度的 1/1024，.xlsx 的偏移量单位为 EMU
+        anchor.setDx2(isExcel2003 ? Math.round(width * 1024 / colWidth) : Math.round(width * Units.EMU_PER_PIXEL));
+
+        float height = imageWatermark.getHeight();
+        int rowNumber = 0;
+        float rowHeight;
+        while (height >= (rowHeight = getRowHeightInPixels(sheet, rowNumber))) {
+            height -= rowHeight;
+            rowNumber++;
+        }
+        anchor.setRow2(rowNumber);
+        // .xls 的偏移量为单元格高度的 1/256
+        anchor.setDy2(isExcel2003 ? Math.round(height * 256 / rowHeight) : Math.round(height * Units.EMU_PER_PIXEL));
+        return anchor;
+    }
+
+    /*
+     * 获取行高（单位：px）
+     */
+    private float getRowHeightInPixels(Sheet sheet, int rowNumber) {
+        Row row = sheet.getRow(rowNumber);
+        float heightInPoints = row != null ? row.getHeightInPoints() : sheet.getDefaultRowHeightInPoints();
+        return heightInPoints * Units.PIXEL_DPI / Units.POINT_DPI;
+    }
+
+    /**
+     * 设置工作表背景图片（Excel 会在单元格下方平铺背景图片，只在编辑时显示，不打印）
+     *
+     * @param sheet       工作表
+     * @param pictureData 图片
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    private void setBackgroundPicture(XSSFSheet sheet, XSSFPictureData pictureData) {
+        String relationId = sheet.addRelation(null, XSSFRelation.IMAGES, pictureData).getRelationship().getId();
+        CTWorksheet worksheet = sheet.getCTWorksheet();
+        CTSheetBackgroundPicture backgroundPicture = worksheet.isSetPicture() ? worksheet.getPicture() : worksheet.addNewPicture();
+        backgroundPicture.setId(relationId);
+    }
+
     /**
      * 获取图片类型代码
      *
@@ -171,6 +669,22 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
         }
     }
 
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public RepeatMode getRepeatMode() {
+        return repeatMode;
+    }
+
+    public void setRepeatMode(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
     @Override
     public void close() throws IOException {
         if (workbook != null) {
@@ -182,7 +696,37 @@ public class ExcelWatermarkCreator implements WatermarkCreator {
         if (imageStream != null) {
             imageStream.close();
         }
+        if (zipFile != null) {
+            zipFile.close();
+        }
+        if (tempFile != null) {
+            Files.deleteIfExists(tempFile);
+        }
         // outputStream 不需要关闭，因添加水印后要返回给调用者
     }
 
+    /**
+     * 重复水印的添加方式
+     *
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public enum RepeatMode {
+
+        /**
+         * 每个水印添加一个图片（默认）
+         */
+        PICTURE,
+
+        /**
+         * 将整个重复水印绘制为一张图片，每个工作表只添加一个图片，添加水印的耗时与水印个数无关
+         */
+        SHEET_IMAGE,
+
+        /**
+         * 将整个重复水印绘制为一张图片，作为工作表背景（只支持 .xlsx，.xls 按 SHEET_IMAGE 处理）
+         */
+        BACKGROUND
+    }
+
 }
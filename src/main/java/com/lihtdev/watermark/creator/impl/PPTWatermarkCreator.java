@@ -1,27 +1,479 @@
 package com.lihtdev.watermark.creator.impl;
 
+import cn.hutool.core.img.ImgUtil;
+import cn.hutool.core.io.IoUtil;
 import com.lihtdev.watermark.creator.WatermarkCreator;
-import com.lihtdev.watermark.model.Watermark;
+import com.lihtdev.watermark.exception.WatermarkException;
+import com.lihtdev.watermark.model.*;
+import com.lihtdev.watermark.util.ImageUtils;
+import com.lihtdev.watermark.util.OoxmlPackageWriter;
+import com.lihtdev.watermark.util.OoxmlUtils;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.hslf.usermodel.HSLFSlideShow;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.sl.usermodel.*;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFPictureShape;
+import org.apache.poi.xslf.usermodel.XSLFSheet;
+import org.apache.poi.xslf.usermodel.XSLFSlideLayout;
+import org.apache.poi.xslf.usermodel.XSLFSlideMaster;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTBlip;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTPicture;
+import org.w3c.dom.Document;
 
+import javax.xml.namespace.QName;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * 给 ppt 文件添加水印
+ * 给 ppt 文件添加水印（支持 .pptx 和 .ppt 文件）
+ * <p>
+ * 水印以图片形状添加，图片在文件中只保存一份。默认添加到幻灯片母版上，所有幻灯片共用，形状数量与幻灯片数量无关；
+ * 隐藏母版图形的版式和幻灯片单独添加水印
+ * <p>
+ * 母版上的水印位于幻灯片内容之下，会被幻灯片中不透明的图片等遮挡，需要水印覆盖在内容之上时使用 {@link PlacementMode#SLIDE}
  *
  * @author lihaitao
  * @since 2020/7/5
  */
 public class PPTWatermarkCreator implements WatermarkCreator {
 
+    /**
+     * PresentationML 的命名空间
+     */
+    private static final String PRESENTATIONML_NAMESPACE = "http://schemas.openxmlformats.org/presentationml/2006/main";
+
+    /**
+     * 固定位置水印与页面边缘的距离
+     */
+    private static final int POSITION_WATERMARK_PADDING = 20;
+
+    /**
+     * 透明度参数比例（100000 为不透明）
+     */
+    private static final int ALPHA_RATIO = 100000;
+
+    /**
+     * 水印形状的名称
+     */
+    private static final String WATERMARK_SHAPE_NAME = "Watermark";
+
+    /**
+     * 原文件输入流
+     */
+    private InputStream inputStream;
+
+    /**
+     * 图片水印输入流
+     */
+    private InputStream imageStream;
+
+    /**
+     * 演示文稿对象（.pptx 为 XMLSlideShow，.ppt 为 HSLFSlideShow）
+     */
+    private SlideShow<?, ?> slideShow;
+
+    /**
+     * 水印的添加位置
+     */
+    private PlacementMode placementMode = PlacementMode.MASTER;
+
+    /**
+     * 是否原样复制未修改的部件：只重新生成添加了水印的母版、版式、幻灯片及其关系部件、水印图片和内容类型，
+     * 其他部件按压缩数据原样复制，不经过 POI 重新压缩（只支持 .pptx）
+     */
+    private boolean rawCopy = false;
+
+    /**
+     * 原文件（原样复制未修改的部件时使用）
+     */
+    private ZipFile zipFile;
+
+    /**
+     * 输入流写入的临时文件（原样复制未修改的部件时使用）
+     */
+    private Path tempFile;
+
+    /**
+     * 添加了水印的母版、版式和幻灯片
+     */
+    private final List<Sheet<?, ?>> watermarkedSheets = new ArrayList<>();
+
+    public PPTWatermarkCreator() {
+    }
+
+    /**
+     * 创建 ppt 水印实例
+     *
+     * @param placementMode 水印的添加位置
+     */
+    public PPTWatermarkCreator(PlacementMode placementMode) {
+        this.placementMode = placementMode;
+    }
+
+    /**
+     * 给 ppt 文件添加水印
+     *
+     * @param inputStream  文件输入流
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
     @Override
     public void create(InputStream inputStream, OutputStream outputStream, Watermark watermark) throws IOException {
+        this.inputStream = FileMagic.prepareToCheckMagic(inputStream);
+        if (rawCopy && FileMagic.valueOf(this.inputStream) == FileMagic.OOXML) {
+            // zip 文件需要随机读取，先写入临时文件
+            this.tempFile = Files.createTempFile("watermark", ".pptx");
+            Files.copy(this.inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            openPackage(tempFile);
+        } else {
+            // 按文件头创建 .pptx 或 .ppt 的演示文稿对象
+            this.slideShow = SlideShowFactory.create(this.inputStream);
+        }
+        setWatermark(outputStream, watermark);
+    }
+
+    /**
+     * 给本地 ppt 文件添加水印，原样复制 .pptx 未修改的部件时直接随机读取文件
+     *
+     * @param path         文件路径
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    @Override
+    public void create(Path path, OutputStream outputStream, Watermark watermark) throws IOException {
+        if (!rawCopy || FileMagic.valueOf(path.toFile()) != FileMagic.OOXML) {
+            WatermarkCreator.super.create(path, outputStream, watermark);
+            return;
+        }
+        openPackage(path);
+        setWatermark(outputStream, watermark);
+    }
 
+    /**
+     * 打开文件（POI 按需读取部件，文档中的图片不会读入内存）
+     *
+     * @param path 文件路径
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void openPackage(Path path) throws IOException {
+        this.zipFile = new ZipFile(path.toFile());
+        try {
+            // 需要可写才能添加图片，关闭时放弃修改，不会写回原文件
+            this.slideShow = new XMLSlideShow(OPCPackage.open(path.toFile(), PackageAccess.READ_WRITE));
+        } catch (InvalidFormatException e) {
+            throw new WatermarkException("ppt文件格式错误：" + e.getMessage(), e);
+        }
     }
 
+    /**
+     * 设置水印并写入输出流
+     *
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void setWatermark(OutputStream outputStream, Watermark watermark) throws IOException {
+        if (watermark instanceof TextWatermark) {
+            setTextWatermark((TextWatermark) watermark);
+        } else if (watermark instanceof ImageWatermark) {
+            setImageWatermark((ImageWatermark) watermark);
+        }
+
+        if (zipFile != null) {
+            writePackage(outputStream);
+        } else {
+            slideShow.write(outputStream);
+        }
+    }
+
+    /**
+     * 设置文字水印（文字绘制为图片，透明度已包含在文字颜色中）
+     *
+     * @param textWatermark 文字水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void setTextWatermark(TextWatermark textWatermark) throws IOException {
+        BufferedImage bufferedImage = ImageUtils.createImage(textWatermark);
+        byte[] imageBytes = IoUtil.readBytes(ImgUtil.toStream(bufferedImage, ImageWatermark.Type.PNG.name()));
+        PictureData pictureData = slideShow.addPicture(imageBytes, PictureData.PictureType.PNG);
+        addWatermark(pictureData, bufferedImage.getWidth(), bufferedImage.getHeight(), textWatermark.getStyle(), 1);
+    }
+
+    /**
+     * 设置图片水印（.pptx 的原图片按原格式保存，透明度通过图片的透明度属性设置；.ppt 的图片形状不支持透明度，
+     * 需要透明时将透明度绘制到图片中，保存为 png 格式）
+     *
+     * @param imageWatermark 图片水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void setImageWatermark(ImageWatermark imageWatermark) throws IOException {
+        this.imageStream = imageWatermark.getImageStream();
+        byte[] imageBytes = IoUtil.readBytes(imageStream);
+        float opacity = imageWatermark.getStyle().getOpacity();
+        PictureData pictureData;
+        if (slideShow instanceof XMLSlideShow || opacity >= 1) {
+            pictureData = slideShow.addPicture(imageBytes, getPictureType(imageWatermark));
+        } else {
+            BufferedImage bufferedImage = ImageUtils.setOpacity(ImgUtil.read(new ByteArrayInputStream(imageBytes)), opacity);
+            imageBytes = IoUtil.readBytes(ImgUtil.toStream(bufferedImage, ImageWatermark.Type.PNG.name()));
+            pictureData = slideShow.addPicture(imageBytes, PictureData.PictureType.PNG);
+            opacity = 1;
+        }
+        addWatermark(pictureData, imageWatermark.getWidth(), imageWatermark.getHeight(), imageWatermark.getStyle(), opacity);
+    }
+
+    /**
+     * 按添加位置给母版、版式或幻灯片添加水印，所有水印形状都引用同一个图片
+     *
+     * @param pictureData     水印图片
+     * @param watermarkWidth  水印宽度
+     * @param watermarkHeight 水印高度
+     * @param watermarkStyle  水印样式
+     * @param opacity         图片的透明度
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void addWatermark(PictureData pictureData, int watermarkWidth, int watermarkHeight,
+                              WatermarkStyle watermarkStyle, float opacity) {
+        List<Rectangle2D> anchors = getWatermarkAnchors(watermarkWidth, watermarkHeight, watermarkStyle);
+        if (placementMode == PlacementMode.MASTER) {
+            List<Sheet<?, ?>> masters = new ArrayList<>(slideShow.getSlideMasters());
+            if (slideShow instanceof HSLFSlideShow) {
+                // .ppt 的标题幻灯片使用单独的标题母版
+                masters.addAll(((HSLFSlideShow) slideShow).getTitleMasters());
+            }
+            for (Sheet<?, ?> master : masters) {
+                addWatermark(master, pictureData, anchors, watermarkStyle, opacity);
+                if (!(master instanceof XSLFSlideMaster)) {
+                    continue;
+                }
+                for (XSLFSlideLayout layout : ((XSLFSlideMaster) master).getSlideLayouts()) {
+                    // 隐藏母版图形的版式不显示母版上的水印
+                    if (!layout.getFollowMasterGraphics()) {
+                        addWatermark(layout, pictureData, anchors, watermarkStyle, opacity);
+                    }
+                }
+            }
+        }
+        for (Slide<?, ?> slide : slideShow.getSlides()) {
+            // 隐藏母版图形的幻灯片不显示母版和版式上的水印
+            if (placementMode == PlacementMode.SLIDE || !slide.getFollowMasterObjects()) {
+                addWatermark(slide, pictureData, anchors, watermarkStyle, opacity);
+            }
+        }
+    }
+
+    /**
+     * 给母版、版式或幻灯片添加水印形状
+     *
+     * @param sheet          母版、版式或幻灯片
+     * @param pictureData    水印图片
+     * @param anchors        各个水印的位置
+     * @param watermarkStyle 水印样式
+     * @param opacity        图片的透明度
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void addWatermark(Sheet<?, ?> sheet, PictureData pictureData, List<Rectangle2D> anchors,
+                              WatermarkStyle watermarkStyle, float opacity) {
+        for (int i = 0; i < anchors.size(); i++) {
+            PictureShape<?, ?> picture = sheet.createPicture(pictureData);
+            picture.setAnchor(anchors.get(i));
+            picture.setRotation(watermarkStyle.getFormat().getRotation());
+            if (!(picture instanceof XSLFPictureShape)) {
+                continue;
+            }
+            CTPicture ctPicture = (CTPicture) ((XSLFPictureShape) picture).getXmlObject();
+            ctPicture.getNvPicPr().getCNvPr().setName(WATERMARK_SHAPE_NAME + " " + (i + 1));
+            if (opacity < 1) {
+                CTBlip blip = ctPicture.getBlipFill().getBlip();
+                blip.addNewAlphaModFix().setAmt(Math.round(ALPHA_RATIO * opacity));
+            }
+        }
+        watermarkedSheets.add(sheet);
+    }
+
+    /**
+     * 获取各个水印的位置（单位为磅，原点在页面左上角）
+     *
+     * @param watermarkWidth  水印宽度
+     * @param watermarkHeight 水印高度
+     * @param watermarkStyle  水印样式
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private List<Rectangle2D> getWatermarkAnchors(int watermarkWidth, int watermarkHeight, WatermarkStyle watermarkStyle) {
+        List<Rectangle2D> anchors = new ArrayList<>();
+        if (watermarkStyle instanceof RepeatWatermarkStyle) {
+            RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
+            for (int row = 0; row < repeatWatermarkStyle.getRows(); row++) {
+                for (int col = 0; col < repeatWatermarkStyle.getCols(); col++) {
+                    int x = (watermarkWidth + repeatWatermarkStyle.getXSpace()) * col + repeatWatermarkStyle.getXStart();
+                    int y = (watermarkHeight + repeatWatermarkStyle.getYSpace()) * row + repeatWatermarkStyle.getYStart();
+                    anchors.add(new Rectangle(x, y, watermarkWidth, watermarkHeight));
+                }
+            }
+        } else if (watermarkStyle instanceof PositionWatermarkStyle) {
+            Dimension pageSize = slideShow.getPageSize();
+            for (PositionWatermarkStyle.Position position : ((PositionWatermarkStyle) watermarkStyle).getPositions()) {
+                int x, y;
+                switch (position) {
+                    case LEFT_TOP:
+                        x = POSITION_WATERMARK_PADDING;
+                        y = POSITION_WATERMARK_PADDING;
+                        break;
+                    case LEFT_BOTTOM:
+                        x = POSITION_WATERMARK_PADDING;
+                        y = pageSize.height - watermarkHeight - POSITION_WATERMARK_PADDING;
+                        break;
+                    case RIGHT_TOP:
+                        x = pageSize.width - watermarkWidth - POSITION_WATERMARK_PADDING;
+                        y = POSITION_WATERMARK_PADDING;
+                        break;
+                    case RIGHT_BOTTOM:
+                        x = pageSize.width - watermarkWidth - POSITION_WATERMARK_PADDING;
+                        y = pageSize.height - watermarkHeight - POSITION_WATERMARK_PADDING;
+                        break;
+                    default:
+                        // CENTER
+                        x = (pageSize.width - watermarkWidth) / 2;
+                        y = (pageSize.height - watermarkHeight) / 2;
+                }
+                anchors.add(new Rectangle(x, y, watermarkWidth, watermarkHeight));
+            }
+        }
+        return anchors;
+    }
+
+    /**
+     * 只重新生成添加了水印的母版、版式、幻灯片及其关系部件、水印图片和内容类型部件，其他部件按压缩数据原样复制
+     *
+     * @param outputStream 添加水印后的文件输出流
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void writePackage(OutputStream outputStream) throws IOException {
+        OoxmlPackageWriter packageWriter = new OoxmlPackageWriter(zipFile);
+        try {
+            for (Sheet<?, ?> watermarkedSheet : watermarkedSheets) {
+                XSLFSheet sheet = (XSLFSheet) watermarkedSheet;
+                packageWriter.putXmlPart(sheet.getPackagePart(), sheet.getXmlObject(),
+                        new QName(PRESENTATIONML_NAMESPACE, getRootElementName(sheet)));
+                packageWriter.putRelationships(sheet.getPackagePart());
+            }
+            Document contentTypes = packageWriter.readXmlPart(OoxmlUtils.CONTENT_TYPES_PART_NAME);
+            packageWriter.putNewParts(((XMLSlideShow) slideShow).getPackage(), contentTypes);
+            packageWriter.putPart(OoxmlUtils.CONTENT_TYPES_PART_NAME, contentTypes);
+        } catch (InvalidFormatException e) {
+            throw new WatermarkException("ppt文件格式错误：" + e.getMessage(), e);
+        }
+        packageWriter.write(outputStream);
+    }
+
+    /*
+     * 获取母版、版式或幻灯片部件的根元素名称
+     */
+    private String getRootElementName(XSLFSheet sheet) {
+        if (sheet instanceof XSLFSlideMaster) {
+            return "sldMaster";
+        } else if (sheet instanceof XSLFSlideLayout) {
+            return "sldLayout";
+        }
+        return "sld";
+    }
+
+    /*
+     * 获取图片类型（水印图片的类型与 POI 的图片类型同名）
+     */
+    private PictureData.PictureType getPictureType(ImageWatermark imageWatermark) {
+        return PictureData.PictureType.valueOf(imageWatermark.getType().name());
+    }
+
+    public PlacementMode getPlacementMode() {
+        return placementMode;
+    }
+
+    public void setPlacementMode(PlacementMode placementMode) {
+        this.placementMode = placementMode;
+    }
+
+    public boolean isRawCopy() {
+        return rawCopy;
+    }
+
+    public void setRawCopy(boolean rawCopy) {
+        this.rawCopy = rawCopy;
+    }
+
+    /**
+     * 实现自动关闭流的方法
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
     @Override
     public void close() throws IOException {
+        if (slideShow != null && zipFile != null) {
+            // 放弃对文件的修改
+            ((XMLSlideShow) slideShow).getPackage().revert();
+        } else if (slideShow != null) {
+            slideShow.close();
+        }
+        if (inputStream != null) {
+            inputStream.close();
+        }
+        if (imageStream != null) {
+            imageStream.close();
+        }
+        if (zipFile != null) {
+            zipFile.close();
+        }
+        if (tempFile != null) {
+            Files.deleteIfExists(tempFile);
+        }
+        // outputStream 不需要关闭，因添加水印后要返回给调用者
+    }
 
+    /**
+     * 水印的添加位置
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public enum PlacementMode {
+
+        /**
+         * 添加到幻灯片母版上（默认），隐藏母版图形的版式和幻灯片单独添加，形状数量与幻灯片数量无关
+         */
+        MASTER,
+
+        /**
+         * 添加到每张幻灯片上，水印覆盖在幻灯片内容之上
+         */
+        SLIDE
     }
+
 }
@@ -2,30 +2,53 @@ package com.lihtdev.watermark.creator.impl;
 
 import com.itextpdf.io.image.ImageData;
 import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.io.source.IRandomAccessSource;
+import com.itextpdf.io.source.RandomAccessSourceFactory;
 import com.itextpdf.kernel.colors.DeviceRgb;
 import com.itextpdf.kernel.font.PdfFont;
 import com.itextpdf.kernel.geom.AffineTransform;
+import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+import com.itextpdf.kernel.pdf.WriterProperties;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.kernel.pdf.extgstate.PdfExtGState;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
 import com.itextpdf.layout.Document;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.property.TextAlignment;
 import com.itextpdf.layout.property.VerticalAlignment;
 import com.lihtdev.watermark.creator.WatermarkCreator;
+import com.lihtdev.watermark.enums.FontEmbedding;
+import com.lihtdev.watermark.exception.WatermarkException;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.util.FontUtils;
 import com.lihtdev.watermark.util.TextUtils;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * 给 PDF 文件添加水印
@@ -40,14 +63,71 @@ public class PdfWatermarkCreator implements WatermarkCreator {
      */
     private static final int POSITION_WATERMARK_PADDING = 20;
 
+    /**
+     * 重复水印的绘制模式
+     */
+    private RepeatMode repeatMode = RepeatMode.LAYOUT;
+
+    /**
+     * 文字水印的字体嵌入方式
+     */
+    private FontEmbedding fontEmbedding = FontEmbedding.SUBSET;
+
+    /**
+     * 是否流式处理（每页添加水印后立即写出并释放，内存占用不随页数增长）
+     */
+    private boolean streaming = false;
+
+    /**
+     * 流式处理时采样的堆内存占用的最大值（单位：字节），只在每页写出后采样一次，不是真正的峰值
+     */
+    private long maxSampledHeapUsage;
+
+    /**
+     * 是否按页面范围并行添加水印
+     */
+    private boolean parallel = false;
+
+    /**
+     * 并行添加水印的页数阈值，页数少于此值时合并的开销大于并行的收益，仍顺序添加
+     */
+    private int parallelThreshold = 200;
+
+    /**
+     * 并行添加水印时每个页面范围的最大页数
+     */
+    private int parallelRangeSize = 50;
+
+    /**
+     * 并行添加水印的线程池
+     */
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
     private InputStream inputStream;
 
+    /**
+     * 原文件随机读取源（从本地文件读取时使用）
+     */
+    private IRandomAccessSource source;
+
     private OutputStream outputStream;
 
     private InputStream imageStream;
 
     private Document doc;
 
+    public PdfWatermarkCreator() {
+    }
+
+    /**
+     * 创建 PDF 水印实例
+     *
+     * @param repeatMode 重复水印的绘制模式
+     */
+    public PdfWatermarkCreator(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
     /**
      * 给 PDF 文件添加水印
      *
@@ -61,7 +141,49 @@ public class PdfWatermarkCreator implements WatermarkCreator {
     public void create(InputStream inputStream, OutputStream outputStream, Watermark watermark) throws IOException {
         this.inputStream = inputStream;
         this.outputStream = outputStream;
+        setWatermark(watermark);
+    }
+
+    /**
+     * 给本地 PDF 文件添加水印（通过内存映射随机读取文件，无需先将整个文件读入堆内存）
+     *
+     * @param path         文件路径
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    @Override
+    public void create(Path path, OutputStream outputStream, Watermark watermark) throws IOException {
+        this.source = new RandomAccessSourceFactory().createBestSource(path.toString());
+        this.outputStream = outputStream;
+        setWatermark(watermark);
+    }
 
+    /**
+     * 给 PDF 文件添加水印（通过内存映射随机读取文件，无需先将整个文件读入堆内存，文件通道在 close 时关闭）
+     *
+     * @param fileChannel  文件通道
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    @Override
+    public void create(FileChannel fileChannel, OutputStream outputStream, Watermark watermark) throws IOException {
+        this.source = new RandomAccessSourceFactory().createBestSource(fileChannel);
+        this.outputStream = outputStream;
+        setWatermark(watermark);
+    }
+
+    /**
+     * 设置水印
+     *
+     * @param watermark 水印
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private void setWatermark(Watermark watermark) throws IOException {
         if (watermark instanceof ImageWatermark) {
             setImageWatermark((ImageWatermark) watermark);
         } else if (watermark instanceof TextWatermark) {
@@ -77,27 +199,52 @@ public class PdfWatermarkCreator implements WatermarkCreator {
      * @since 2020/07/16
      */
     private void setTextWatermark(TextWatermark textWatermark) throws IOException {
-        PdfDocument pdfDoc = new PdfDocument(new PdfReader(inputStream), new PdfWriter(outputStream));
+        PdfDocument pdfDoc = openPdfDocument();
         this.doc = new Document(pdfDoc);
 
-        int pages = pdfDoc.getNumberOfPages();
-        PdfFont font = FontUtils.getPdfFont(textWatermark.getFontFamily());
+        if (isParallel(pdfDoc)) {
+            createParallelWatermark(pdfDoc, (rangeDoc, rangeDocument, fromPage, toPage) ->
+                    createTextWatermark(rangeDoc, rangeDocument, textWatermark, fromPage, toPage, false));
+        } else {
+            createTextWatermark(pdfDoc, doc, textWatermark, 1, pdfDoc.getNumberOfPages(), streaming);
+        }
+    }
+
+    /**
+     * 给指定范围的页面添加文本水印
+     *
+     * @param pdfDoc        PDF 文档
+     * @param document      PDF 文档的排版对象
+     * @param textWatermark 文本水印
+     * @param fromPage      起始页码
+     * @param toPage        结束页码（包含）
+     * @param flushPages    是否在添加水印后立即写出页面
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private void createTextWatermark(PdfDocument pdfDoc, Document document, TextWatermark textWatermark,
+                                     int fromPage, int toPage, boolean flushPages) {
+        PdfFont font = FontUtils.getPdfFont(textWatermark.getFontFamily(), fontEmbedding);
         DeviceRgb deviceRgb = new DeviceRgb(textWatermark.getAwtColor());
         Paragraph paragraph = new Paragraph(textWatermark.getText()).setFont(font)
                 .setFontColor(deviceRgb, textWatermark.getStyle().getOpacity())
                 .setFontSize(textWatermark.getFontSize());
 
-        int[] watermarkWidthAndHeight = TextUtils.getTextWidthAndHeight(textWatermark.getFontSize(), textWatermark.getText());
-        float watermarkWidth = watermarkWidthAndHeight[0];
-        float watermarkHeight = watermarkWidthAndHeight[1];
+        float watermarkWidth = TextUtils.getTextWidth(font, textWatermark.getFontSize(), textWatermark.getText());
+        float watermarkHeight = TextUtils.getTextHeight(font, textWatermark.getFontSize(), textWatermark.getText());
 
         // transparency
         PdfExtGState extGState = new PdfExtGState();
         extGState.setFillOpacity(textWatermark.getStyle().getOpacity());
         double rotation = Math.toRadians(-textWatermark.getStyle().getFormat().getRotation());
+        // 水印单元只绘制一次，每个位置只引用它
+        PdfFormXObject watermarkTile = repeatMode != RepeatMode.LAYOUT && textWatermark.getStyle() instanceof RepeatWatermarkStyle
+                ? createTextWatermarkTile(pdfDoc, textWatermark, font, deviceRgb) : null;
+        // 整页水印，相同尺寸的页面共享同一个
+        Map<List<Float>, PdfFormXObject> pageWatermarks = new HashMap<>();
         // loop over every page
         // Implement transformation matrix usage in order to scale image
-        for (int pageNumber = 1; pageNumber <= pages; pageNumber++) {
+        for (int pageNumber = fromPage; pageNumber <= toPage; pageNumber++) {
             PdfPage pdfPage = pdfDoc.getPage(pageNumber);
             Rectangle pageSize = pdfPage.getPageSize();
             float pageWidth = pageSize.getLeft() + pageSize.getRight();
@@ -107,13 +254,27 @@ public class PdfWatermarkCreator implements WatermarkCreator {
             over.setExtGState(extGState);
             WatermarkStyle watermarkStyle = textWatermark.getStyle();
             if (watermarkStyle instanceof PositionWatermarkStyle) {
-                createPositionTextWatermark(paragraph, (PositionWatermarkStyle) watermarkStyle, pageNumber, pageWidth, pageHeight);
+                createPositionTextWatermark(document, paragraph, (PositionWatermarkStyle) watermarkStyle, pageNumber, pageWidth, pageHeight);
             } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
-                // 设置旋转度，只有重复水印支持旋转，其他类型水印旋转后样式不好
-                over.concatMatrix(AffineTransform.getRotateInstance(rotation));
-                createRepeatTextWatermark(paragraph, (RepeatWatermarkStyle) watermarkStyle, pageNumber, watermarkWidth, watermarkHeight);
+                if (repeatMode == RepeatMode.PAGE) {
+                    RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
+                    PdfFormXObject pageWatermark = pageWatermarks.computeIfAbsent(getPageSizeKey(pageSize),
+                            key -> createRepeatPageWatermark(pdfDoc, watermarkTile, repeatWatermarkStyle, pageSize, rotation, watermarkWidth, watermarkHeight));
+                    over.addXObject(pageWatermark, 0, 0);
+                } else {
+                    // 设置旋转度，只有重复水印支持旋转，其他类型水印旋转后样式不好
+                    over.concatMatrix(AffineTransform.getRotateInstance(rotation));
+                    if (watermarkTile != null) {
+                        createRepeatTileWatermark(over, watermarkTile, (RepeatWatermarkStyle) watermarkStyle, watermarkWidth, watermarkHeight);
+                    } else {
+                        createRepeatTextWatermark(document, paragraph, (RepeatWatermarkStyle) watermarkStyle, pageNumber, watermarkWidth, watermarkHeight);
+                    }
+                }
             }
             over.restoreState();
+            if (flushPages) {
+                flushPage(pdfPage);
+            }
         }
     }
 
@@ -125,13 +286,34 @@ public class PdfWatermarkCreator implements WatermarkCreator {
      * @since 2020/07/16
      */
     private void setImageWatermark(ImageWatermark imageWatermark) throws IOException {
-        PdfDocument pdfDoc = new PdfDocument(new PdfReader(inputStream), new PdfWriter(outputStream));
+        PdfDocument pdfDoc = openPdfDocument();
         this.doc = new Document(pdfDoc);
         this.imageStream = imageWatermark.getImageStream();
 
-        int pages = pdfDoc.getNumberOfPages();
         // image watermark
         Image watermarkImage = ImageIO.read(imageStream);
+        if (isParallel(pdfDoc)) {
+            createParallelWatermark(pdfDoc, (rangeDoc, rangeDocument, fromPage, toPage) ->
+                    createImageWatermark(rangeDoc, imageWatermark, watermarkImage, fromPage, toPage, false));
+        } else {
+            createImageWatermark(pdfDoc, imageWatermark, watermarkImage, 1, pdfDoc.getNumberOfPages(), streaming);
+        }
+    }
+
+    /**
+     * 给指定范围的页面添加图片水印
+     *
+     * @param pdfDoc         PDF 文档
+     * @param imageWatermark 图片水印
+     * @param watermarkImage 水印图片
+     * @param fromPage       起始页码
+     * @param toPage         结束页码（包含）
+     * @param flushPages     是否在添加水印后立即写出页面
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private void createImageWatermark(PdfDocument pdfDoc, ImageWatermark imageWatermark, Image watermarkImage,
+                                      int fromPage, int toPage, boolean flushPages) throws IOException {
         ImageData watermarkImageData = ImageDataFactory.create(watermarkImage, null);
         //  Implement transformation matrix usage in order to scale image
         float watermarkWidth = watermarkImageData.getWidth();
@@ -140,10 +322,15 @@ public class PdfWatermarkCreator implements WatermarkCreator {
         PdfExtGState extGState = new PdfExtGState();
         extGState.setFillOpacity(imageWatermark.getStyle().getOpacity());
         double rotation = Math.toRadians(-imageWatermark.getStyle().getFormat().getRotation());
+        // 水印单元只绘制一次，每个位置只引用它
+        PdfFormXObject watermarkTile = repeatMode != RepeatMode.LAYOUT && imageWatermark.getStyle() instanceof RepeatWatermarkStyle
+                ? createImageWatermarkTile(pdfDoc, watermarkImageData, watermarkWidth, watermarkHeight) : null;
+        // 整页水印，相同尺寸的页面共享同一个
+        Map<List<Float>, PdfFormXObject> pageWatermarks = new HashMap<>();
         // loop over every page
         // Implement transformation matrix usage in order to scale image
-        for (int i = 1; i <= pages; i++) {
-            PdfPage pdfPage = pdfDoc.getPage(i);
+        for (int pageNumber = fromPage; pageNumber <= toPage; pageNumber++) {
+            PdfPage pdfPage = pdfDoc.getPage(pageNumber);
             Rectangle pageSize = pdfPage.getPageSize();
             float pageWidth = pageSize.getLeft() + pageSize.getRight();
             float pageHeight = pageSize.getTop() + pageSize.getBottom();
@@ -155,17 +342,161 @@ public class PdfWatermarkCreator implements WatermarkCreator {
             if (watermarkStyle instanceof PositionWatermarkStyle) {
                 createPositionImageWatermark(over, watermarkImageData, (PositionWatermarkStyle) watermarkStyle, pageWidth, pageHeight, watermarkWidth, watermarkHeight);
             } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
-                // 设置旋转度，只有重复水印支持旋转，其他类型水印旋转后样式不好
-                over.concatMatrix(AffineTransform.getRotateInstance(rotation));
-                createRepeatImageWatermark(over, watermarkImageData, (RepeatWatermarkStyle) watermarkStyle, watermarkWidth, watermarkHeight);
+                if (repeatMode == RepeatMode.PAGE) {
+                    RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
+                    PdfFormXObject pageWatermark = pageWatermarks.computeIfAbsent(getPageSizeKey(pageSize),
+                            key -> createRepeatPageWatermark(pdfDoc, watermarkTile, repeatWatermarkStyle, pageSize, rotation, watermarkWidth, watermarkHeight));
+                    over.addXObject(pageWatermark, 0, 0);
+                } else {
+                    // 设置旋转度，只有重复水印支持旋转，其他类型水印旋转后样式不好
+                    over.concatMatrix(AffineTransform.getRotateInstance(rotation));
+                    if (watermarkTile != null) {
+                        createRepeatTileWatermark(over, watermarkTile, (RepeatWatermarkStyle) watermarkStyle, watermarkWidth, watermarkHeight);
+                    } else {
+                        createRepeatImageWatermark(over, watermarkImageData, (RepeatWatermarkStyle) watermarkStyle, watermarkWidth, watermarkHeight);
+                    }
+                }
             }
             over.restoreState();
+            if (flushPages) {
+                flushPage(pdfPage);
+            }
+        }
+    }
+
+    /**
+     * 是否并行添加水印
+     *
+     * @param pdfDoc PDF 文档
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private boolean isParallel(PdfDocument pdfDoc) {
+        return parallel && forkJoinPool.getParallelism() > 1 && pdfDoc.getNumberOfPages() >= parallelThreshold;
+    }
+
+    /**
+     * 并行添加水印：将文档按页面范围拆分，每个范围在线程池中使用独立的 PDF 文档绘制水印，
+     * 再将每页的水印作为 Form XObject 合并回原文档（原文档只做追加，书签、链接和大纲等均保持不变）
+     * <p>
+     * 范围按顺序提交，同时执行或等待合并的范围不超过线程池的并行数，每合并完一个范围才提交下一个，
+     * 内存中的范围文档数量不随页数增长，可以与流式处理同时使用
+     * <p>
+     * 每个范围是独立的文档，字体（子集）、水印单元和整页水印在每个范围中各写入一份，合并后的文档中每个范围各有一份副本；
+     * 范围越大副本越少，但每个范围文档占用的内存越大，见 {@link #setParallelRangeSize(int)}
+     *
+     * @param pdfDoc                PDF 文档
+     * @param rangeWatermarkCreator 页面范围水印创建方法
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private void createParallelWatermark(PdfDocument pdfDoc, RangeWatermarkCreator rangeWatermarkCreator) throws IOException {
+        int pages = pdfDoc.getNumberOfPages();
+        int parallelism = forkJoinPool.getParallelism();
+        int rangeSize = Math.max(1, Math.min(parallelRangeSize, (pages + parallelism - 1) / parallelism));
+        Deque<ForkJoinTask<byte[]>> tasks = new ArrayDeque<>();
+        int nextFromPage = 1;
+        int pageNumber = 1;
+        try {
+            while (pageNumber <= pages) {
+                while (nextFromPage <= pages && tasks.size() < parallelism) {
+                    tasks.add(submitRangeWatermark(pdfDoc, nextFromPage, Math.min(nextFromPage + rangeSize - 1, pages), rangeWatermarkCreator));
+                    nextFromPage += rangeSize;
+                }
+                ForkJoinTask<byte[]> task = tasks.poll();
+                try (PdfDocument rangeDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(task.join())))) {
+                    for (int rangePageNumber = 1; rangePageNumber <= rangeDoc.getNumberOfPages(); rangePageNumber++, pageNumber++) {
+                        PdfPage pdfPage = pdfDoc.getPage(pageNumber);
+                        PdfFormXObject pageWatermark = rangeDoc.getPage(rangePageNumber).copyAsFormXObject(pdfDoc);
+                        new PdfCanvas(pdfPage).addXObject(pageWatermark, 0, 0);
+                        if (streaming) {
+                            flushPage(pdfPage);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 某个范围失败时取消尚未合并的范围，不再占用线程池
+            tasks.forEach(task -> task.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * 提交一个页面范围的水印任务（PdfDocument 不是线程安全的，页面尺寸需在当前线程读取）
+     *
+     * @param pdfDoc                PDF 文档
+     * @param fromPage              起始页码
+     * @param toPage                结束页码（包含）
+     * @param rangeWatermarkCreator 页面范围水印创建方法
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private ForkJoinTask<byte[]> submitRangeWatermark(PdfDocument pdfDoc, int fromPage, int toPage, RangeWatermarkCreator rangeWatermarkCreator) {
+        List<Rectangle> pageSizes = new ArrayList<>();
+        for (int pageNumber = fromPage; pageNumber <= toPage; pageNumber++) {
+            pageSizes.add(pdfDoc.getPage(pageNumber).getPageSize());
+        }
+        return forkJoinPool.submit(() -> createRangeWatermark(pageSizes, fromPage, rangeWatermarkCreator));
+    }
+
+    /**
+     * 在独立的 PDF 文档中绘制一个页面范围的水印（每页与原文档对应页的尺寸相同，只包含水印）
+     * <p>
+     * 字体等资源在文档关闭时才会完整写出，所以需要先关闭文档，再从输出的字节中读取
+     *
+     * @param pageSizes             各页面尺寸
+     * @param fromPage              起始页码
+     * @param rangeWatermarkCreator 页面范围水印创建方法
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private byte[] createRangeWatermark(List<Rectangle> pageSizes, int fromPage, RangeWatermarkCreator rangeWatermarkCreator) {
+        ByteArrayOutputStream rangeOutputStream = new ByteArrayOutputStream();
+        try (PdfDocument rangeDoc = new PdfDocument(new PdfWriter(rangeOutputStream))) {
+            for (Rectangle pageSize : pageSizes) {
+                rangeDoc.addNewPage(new PageSize(pageSize));
+            }
+            rangeWatermarkCreator.create(rangeDoc, new Document(rangeDoc), 1, pageSizes.size());
+        } catch (IOException e) {
+            throw new WatermarkException("给第 " + fromPage + " 页起的页面添加水印时发生错误", e);
         }
+        return rangeOutputStream.toByteArray();
+    }
+
+    /**
+     * 打开 PDF 文档（优先从随机读取源读取），流式处理时启用读取端的省内存模式和写入端的完全压缩、智能模式
+     *
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private PdfDocument openPdfDocument() throws IOException {
+        PdfReader reader = source != null ? new PdfReader(source, new ReaderProperties()) : new PdfReader(inputStream);
+        if (!streaming) {
+            return new PdfDocument(reader, new PdfWriter(outputStream));
+        }
+        reader.setMemorySavingMode(true);
+        PdfWriter writer = new PdfWriter(outputStream, new WriterProperties().setFullCompressionMode(true).useSmartMode());
+        return new PdfDocument(reader, writer);
+    }
+
+    /**
+     * 将已添加水印的页面写出并释放，写出后采样一次堆内存占用
+     *
+     * @param pdfPage 页面
+     * @author lihaitao
+     * @since 2020/07/16
+     */
+    private void flushPage(PdfPage pdfPage) {
+        pdfPage.flush();
+        long heapUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        maxSampledHeapUsage = Math.max(maxSampledHeapUsage, heapUsage);
     }
 
     /**
      * 添加固定位置的文本水印（固定位置的水印只支持水平板式，不支持斜式和垂直）
      *
+     * @param document               PDF 文档的排版对象
      * @param watermarkParagraph     水印段落
      * @param positionWatermarkStyle 固定位置水印样式
      * @param pageNumber             页码
@@ -174,39 +505,39 @@ public class PdfWatermarkCreator implements WatermarkCreator {
      * @author lihaitao
      * @date 2020/7/16
      */
-    private void createPositionTextWatermark(Paragraph watermarkParagraph, PositionWatermarkStyle positionWatermarkStyle,
+    private void createPositionTextWatermark(Document document, Paragraph watermarkParagraph, PositionWatermarkStyle positionWatermarkStyle,
                                              int pageNumber, float pageWidth, float pageHeight) {
         for (PositionWatermarkStyle.Position position : positionWatermarkStyle.getPositions()) {
             switch (position) {
                 case LEFT_TOP: {
                     float x = POSITION_WATERMARK_PADDING;
                     float y = pageHeight - POSITION_WATERMARK_PADDING;
-                    doc.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.LEFT, VerticalAlignment.TOP, 0);
+                    document.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.LEFT, VerticalAlignment.TOP, 0);
                     break;
                 }
                 case LEFT_BOTTOM: {
                     float x = POSITION_WATERMARK_PADDING;
                     float y = POSITION_WATERMARK_PADDING;
-                    doc.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.LEFT, VerticalAlignment.BOTTOM, 0);
+                    document.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.LEFT, VerticalAlignment.BOTTOM, 0);
                     break;
                 }
                 case RIGHT_TOP: {
                     float x = pageWidth - POSITION_WATERMARK_PADDING;
                     float y = pageHeight - POSITION_WATERMARK_PADDING;
-                    doc.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.RIGHT, VerticalAlignment.TOP, 0);
+                    document.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.RIGHT, VerticalAlignment.TOP, 0);
                     break;
                 }
                 case RIGHT_BOTTOM: {
                     float x = pageWidth - POSITION_WATERMARK_PADDING;
                     float y = POSITION_WATERMARK_PADDING;
-                    doc.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.RIGHT, VerticalAlignment.BOTTOM, 0);
+                    document.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.RIGHT, VerticalAlignment.BOTTOM, 0);
                     break;
                 }
                 default: {
                     // CENTER
                     float x = pageWidth / 2;
                     float y = pageHeight / 2;
-                    doc.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.CENTER, VerticalAlignment.MIDDLE, 0);
+                    document.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.CENTER, VerticalAlignment.MIDDLE, 0);
                 }
             }
         }
@@ -215,6 +546,7 @@ public class PdfWatermarkCreator implements WatermarkCreator {
     /**
      * 添加重复的文本水印
      *
+     * @param document             PDF 文档的排版对象
      * @param watermarkParagraph   水印段落
      * @param repeatWatermarkStyle 重复水印样式
      * @param pageNumber           页码
@@ -223,13 +555,13 @@ public class PdfWatermarkCreator implements WatermarkCreator {
      * @author lihaitao
      * @date 2020/7/16
      */
-    private void createRepeatTextWatermark(Paragraph watermarkParagraph, RepeatWatermarkStyle repeatWatermarkStyle,
+    private void createRepeatTextWatermark(Document document, Paragraph watermarkParagraph, RepeatWatermarkStyle repeatWatermarkStyle,
                                            int pageNumber, float watermarkWidth, float watermarkHeight) {
         for (int row = -3; row < repeatWatermarkStyle.getRows(); row++) {
             for (int col = -3; col < repeatWatermarkStyle.getCols(); col++) {
                 float x = (watermarkWidth + repeatWatermarkStyle.getXSpace()) * col + repeatWatermarkStyle.getXStart();
                 float y = (watermarkHeight + repeatWatermarkStyle.getYSpace()) * row + repeatWatermarkStyle.getYStart();
-                doc.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.LEFT, VerticalAlignment.BOTTOM, 0);
+                document.showTextAligned(watermarkParagraph, x, y, pageNumber, TextAlignment.LEFT, VerticalAlignment.BOTTOM, 0);
             }
         }
     }
@@ -299,10 +631,184 @@ public class PdfWatermarkCreator implements WatermarkCreator {
         }
     }
 
+    /**
+     * 创建文本水印单元（整个文档只排版一次，各页面的各个位置通过 Form XObject 引用）
+     *
+     * @param pdfDoc        PDF 文档
+     * @param textWatermark 文本水印
+     * @param font          字体
+     * @param color         字体颜色
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    private PdfFormXObject createTextWatermarkTile(PdfDocument pdfDoc, TextWatermark textWatermark, PdfFont font, DeviceRgb color) {
+        String text = textWatermark.getText();
+        int fontSize = textWatermark.getFontSize();
+        float width = font.getWidth(text, fontSize);
+        // descent 为负值，水印单元的原点在文字的左下角
+        float descent = font.getDescent(text, fontSize);
+        float ascent = font.getAscent(text, fontSize);
+        PdfFormXObject watermarkTile = new PdfFormXObject(new Rectangle(0, 0, width, ascent - descent));
+        new PdfCanvas(watermarkTile, pdfDoc)
+                .beginText()
+                .setFontAndSize(font, fontSize)
+                .setFillColor(color)
+                .moveText(0, -descent)
+                .showText(text)
+                .endText();
+        return watermarkTile;
+    }
+
+    /**
+     * 创建图片水印单元（图片数据只写入一次，各页面的各个位置通过 Form XObject 引用）
+     *
+     * @param pdfDoc             PDF 文档
+     * @param watermarkImageData 水印图片
+     * @param watermarkWidth     水印宽度
+     * @param watermarkHeight    水印高度
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    private PdfFormXObject createImageWatermarkTile(PdfDocument pdfDoc, ImageData watermarkImageData,
+                                                    float watermarkWidth, float watermarkHeight) {
+        PdfFormXObject watermarkTile = new PdfFormXObject(new Rectangle(0, 0, watermarkWidth, watermarkHeight));
+        new PdfCanvas(watermarkTile, pdfDoc)
+                .addXObject(new PdfImageXObject(watermarkImageData), watermarkWidth, 0, 0, watermarkHeight, 0, 0);
+        return watermarkTile;
+    }
+
+    /**
+     * 添加重复的水印单元（PDF 文档的原点在左下角，水印单元的原点在左下角）
+     *
+     * @param over                 水印画布
+     * @param watermarkTile        水印单元
+     * @param repeatWatermarkStyle 重复水印样式
+     * @param watermarkWidth       水印宽度
+     * @param watermarkHeight      水印高度
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    private void createRepeatTileWatermark(PdfCanvas over, PdfFormXObject watermarkTile, RepeatWatermarkStyle repeatWatermarkStyle,
+                                           float watermarkWidth, float watermarkHeight) {
+        for (int row = -3; row < repeatWatermarkStyle.getRows(); row++) {
+            for (int col = -3; col < repeatWatermarkStyle.getCols(); col++) {
+                float x = (watermarkWidth + repeatWatermarkStyle.getXSpace()) * col + repeatWatermarkStyle.getXStart();
+                float y = (watermarkHeight + repeatWatermarkStyle.getYSpace()) * row + repeatWatermarkStyle.getYStart();
+                over.addXObject(watermarkTile, x, y);
+            }
+        }
+    }
+
+    /**
+     * 创建整页的重复水印（包含旋转后的整个水印网格，相同尺寸的页面共享同一个 Form XObject）
+     *
+     * @param pdfDoc               PDF 文档
+     * @param watermarkTile        水印单元
+     * @param repeatWatermarkStyle 重复水印样式
+     * @param pageSize             页面尺寸
+     * @param rotation             旋转度（弧度）
+     * @param watermarkWidth       水印宽度
+     * @param watermarkHeight      水印高度
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    private PdfFormXObject createRepeatPageWatermark(PdfDocument pdfDoc, PdfFormXObject watermarkTile, RepeatWatermarkStyle repeatWatermarkStyle,
+                                                     Rectangle pageSize, double rotation, float watermarkWidth, float watermarkHeight) {
+        PdfFormXObject pageWatermark = new PdfFormXObject(pageSize);
+        PdfCanvas canvas = new PdfCanvas(pageWatermark, pdfDoc);
+        canvas.concatMatrix(AffineTransform.getRotateInstance(rotation));
+        createRepeatTileWatermark(canvas, watermarkTile, repeatWatermarkStyle, watermarkWidth, watermarkHeight);
+        return pageWatermark;
+    }
+
+    /**
+     * 获取页面尺寸的键值，用于在相同尺寸的页面间共享整页水印（Rectangle 没有实现 equals 和 hashCode）
+     *
+     * @param pageSize 页面尺寸
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    private List<Float> getPageSizeKey(Rectangle pageSize) {
+        return Arrays.asList(pageSize.getX(), pageSize.getY(), pageSize.getWidth(), pageSize.getHeight());
+    }
+
+    public RepeatMode getRepeatMode() {
+        return repeatMode;
+    }
+
+    public void setRepeatMode(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
+    public FontEmbedding getFontEmbedding() {
+        return fontEmbedding;
+    }
+
+    public void setFontEmbedding(FontEmbedding fontEmbedding) {
+        this.fontEmbedding = fontEmbedding;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelRangeSize() {
+        return parallelRangeSize;
+    }
+
+    /**
+     * 设置并行添加水印时每个页面范围的最大页数（范围越大，合并后的文档中字体和水印的副本越少，但占用的内存越多）
+     *
+     * @param parallelRangeSize 每个页面范围的最大页数
+     */
+    public void setParallelRangeSize(int parallelRangeSize) {
+        this.parallelRangeSize = parallelRangeSize;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * 获取流式处理时采样的堆内存占用的最大值（单位：字节，非流式处理时为 0）
+     * <p>
+     * 只在每页写出后采样，两次采样之间的占用（如绘制水印时）不会被记录，只能粗略反映内存占用是否随页数增长
+     */
+    public long getMaxSampledHeapUsage() {
+        return maxSampledHeapUsage;
+    }
+
     @Override
     public void close() throws IOException {
         if (doc != null) {
             doc.close();
+        } else if (source != null) {
+            // 文档未打开时，随机读取源不会随文档关闭
+            source.close();
         }
         if (inputStream != null) {
             inputStream.close();
@@ -313,4 +819,48 @@ public class PdfWatermarkCreator implements WatermarkCreator {
         // outputStream 不需要关闭，因添加水印后要返回给调用者
     }
 
+    /**
+     * 页面范围水印创建方法
+     *
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    @FunctionalInterface
+    private interface RangeWatermarkCreator {
+
+        /**
+         * 给指定范围的页面添加水印
+         *
+         * @param pdfDoc   PDF 文档
+         * @param document PDF 文档的排版对象
+         * @param fromPage 起始页码
+         * @param toPage   结束页码（包含）
+         */
+        void create(PdfDocument pdfDoc, Document document, int fromPage, int toPage) throws IOException;
+    }
+
+    /**
+     * 重复水印的绘制模式
+     *
+     * @author lihaitao
+     * @since 2020/7/16
+     */
+    public enum RepeatMode {
+
+        /**
+         * 每页的每个水印都使用排版引擎绘制
+         */
+        LAYOUT,
+
+        /**
+         * 水印单元只绘制一次（Form XObject），每页的每个水印都引用它，可显著减少 CPU 时间和文件大小
+         */
+        TILE,
+
+        /**
+         * 整页的水印网格只绘制一次（Form XObject），相同尺寸的页面共享同一个，每页只需引用一次，文件大小不随页数增长
+         */
+        PAGE
+    }
+
 }
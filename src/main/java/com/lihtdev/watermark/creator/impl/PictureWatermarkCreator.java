@@ -1,25 +1,54 @@
 package com.lihtdev.watermark.creator.impl;
 
+import cn.hutool.core.img.ImgUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.crypto.SecureUtil;
 import com.lihtdev.watermark.creator.WatermarkCreator;
+import com.lihtdev.watermark.exception.WatermarkException;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.util.FontUtils;
+import com.lihtdev.watermark.util.PngStripeWriter;
+import com.lihtdev.watermark.util.RasterBlender;
+import com.lihtdev.watermark.util.SpriteCache;
 import com.lihtdev.watermark.util.TextUtils;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.zip.Deflater;
 
 /**
- * 给图片添加水印（固定位置水印暂不支持斜式）
+ * 给图片添加水印（固定位置水印暂不支持斜式），默认按原图片的格式输出
  *
  * @author lihaitao
  * @since 2020/7/5
  */
 public class PictureWatermarkCreator implements WatermarkCreator {
 
+    /**
+     * 不支持透明度的图片格式
+     */
+    private static final Set<String> NO_ALPHA_FORMATS = new HashSet<>(Arrays.asList("jpeg", "jpg", "bmp", "wbmp"));
+
     /**
      * 原文件输入流
      */
@@ -35,6 +64,37 @@ public class PictureWatermarkCreator implements WatermarkCreator {
      */
     private InputStream imageStream;
 
+    /**
+     * 输出图片的格式（如：png、jpeg、bmp、gif），为 null 时与原图片的格式相同
+     */
+    private String outputFormat;
+
+    /**
+     * 压缩质量（0 ~ 1），如：JPEG 的图片质量，高版本 JDK 中 PNG 的压缩级别（1 - 压缩质量），为 null 时使用默认值
+     */
+    private Float compressionQuality;
+
+    /**
+     * 是否输出渐进式（PNG 为隔行扫描）的图片
+     */
+    private boolean progressive = false;
+
+    /**
+     * 分条处理的高度（像素），大于 0 时逐条解码、添加水印并输出 PNG 图片，用于内存放不下整张图片的超大图片；
+     * 为 0 时整张图片一次处理
+     */
+    private int stripeHeight = 0;
+
+    /**
+     * 是否直接在原图片的像素数组上混合水印（不经过 Graphics2D），原图片的类型不支持时仍使用 Graphics2D
+     */
+    private boolean directBlend = false;
+
+    /**
+     * 本次输出图片的格式
+     */
+    private String formatName;
+
     /**
      * 给图片添加水印
      *
@@ -62,47 +122,42 @@ public class PictureWatermarkCreator implements WatermarkCreator {
      * @since 2020/07/13
      */
     private void setTextWatermark(TextWatermark textWatermark) throws IOException {
-        Image srcImage = ImageIO.read(inputStream);
-
-        int srcImageWidth = srcImage.getWidth(null);
-        int srcImageHeight = srcImage.getHeight(null);
-
-        BufferedImage srcBufferedImage = new BufferedImage(srcImageWidth, srcImageHeight,
-                BufferedImage.TYPE_INT_RGB);
-
-        int[] watermarkWidthAndHeight = TextUtils.getTextWidthAndHeight(textWatermark.getFontSize(), textWatermark.getText());
-        int watermarkWidth = watermarkWidthAndHeight[0];
-        int watermarkHeight = watermarkWidthAndHeight[1];
-
-        Graphics2D g = srcBufferedImage.createGraphics();
-        // 设置对线段的锯齿状边缘处理
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g.drawImage(srcImage.getScaledInstance(srcImageWidth, srcImageHeight, Image.SCALE_SMOOTH), 0, 0, null);
-        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP, textWatermark.getStyle().getOpacity()));
-        g.setColor(textWatermark.getAwtColor());
-        g.setFont(FontUtils.getFont(textWatermark.getFontFamily(), Font.BOLD, textWatermark.getFontSize()));
+        Font font = FontUtils.getFont(textWatermark.getFontFamily(), Font.BOLD, textWatermark.getFontSize());
+        int watermarkWidth = TextUtils.getTextWidth(font, textWatermark.getText());
+        int watermarkHeight = TextUtils.getTextHeight(font, textWatermark.getText());
 
         WatermarkStyle watermarkStyle = textWatermark.getStyle();
-        double rotation = Math.toRadians(watermarkStyle.getFormat().getRotation());
+        double rotation = watermarkStyle instanceof RepeatWatermarkStyle ? Math.toRadians(watermarkStyle.getFormat().getRotation()) : 0;
+        Color color = textWatermark.getAwtColor();
+        // 文字的原点为基线的起点，区域取字形的实际区域，精灵图中不保留多余的透明像素
+        SpriteCache.Sprite sprite = SpriteCache.get(
+                Arrays.asList(textWatermark.getText(), font, color.getRGB(), watermarkStyle.getOpacity(), rotation),
+                () -> SpriteCache.render(font.createGlyphVector(new FontRenderContext(null, false, false), textWatermark.getText()).getVisualBounds(),
+                        rotation, watermarkStyle.getOpacity(), g -> {
+                            g.setColor(color);
+                            g.setFont(font);
+                            g.drawString(textWatermark.getText(), 0, 0);
+                        }));
 
-        if (watermarkStyle instanceof PositionWatermarkStyle) {
-            PositionWatermarkStyle positionWatermarkStyle = (PositionWatermarkStyle) watermarkStyle;
-            for (PositionWatermarkStyle.Position position : positionWatermarkStyle.getPositions()) {
-                int[] coordinates = getPositionTextWatermarkCoordinate(position, srcImageWidth, srcImageHeight, watermarkWidth, watermarkHeight);
-                g.drawString(textWatermark.getText(), coordinates[0], coordinates[1]);
-            }
-        } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
-            g.rotate(rotation, srcImageWidth / 2.0, srcImageHeight / 2.0);
-            RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
-            for (int rowIndex = -5; rowIndex < repeatWatermarkStyle.getRows(); rowIndex++) {
-                for (int colIndex = -5; colIndex < repeatWatermarkStyle.getCols(); colIndex++) {
-                    int[] coordinates = getRepeatTextWatermarkCoordinate(repeatWatermarkStyle, watermarkWidth, watermarkHeight, rowIndex, colIndex);
-                    g.drawString(textWatermark.getText(), coordinates[0], coordinates[1]);
+        paintWatermark((canvas, srcImageWidth, srcImageHeight) -> {
+            if (watermarkStyle instanceof PositionWatermarkStyle) {
+                PositionWatermarkStyle positionWatermarkStyle = (PositionWatermarkStyle) watermarkStyle;
+                for (PositionWatermarkStyle.Position position : positionWatermarkStyle.getPositions()) {
+                    int[] coordinates = getPositionTextWatermarkCoordinate(position, srcImageWidth, srcImageHeight, watermarkWidth, watermarkHeight);
+                    canvas.drawSprite(sprite, coordinates[0], coordinates[1]);
+                }
+            } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
+                AffineTransform transform = AffineTransform.getRotateInstance(rotation, srcImageWidth / 2.0, srcImageHeight / 2.0);
+                RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
+                for (int rowIndex = -5; rowIndex < repeatWatermarkStyle.getRows(); rowIndex++) {
+                    for (int colIndex = -5; colIndex < repeatWatermarkStyle.getCols(); colIndex++) {
+                        int[] coordinates = getRepeatTextWatermarkCoordinate(repeatWatermarkStyle, watermarkWidth, watermarkHeight, rowIndex, colIndex);
+                        Point2D point = transform.transform(new Point2D.Double(coordinates[0], coordinates[1]), null);
+                        canvas.drawSprite(sprite, point.getX(), point.getY());
+                    }
                 }
             }
-        }
-        g.dispose();
-        ImageIO.write(srcBufferedImage, "png", outputStream);
+        });
     }
 
     /**
@@ -115,46 +170,186 @@ public class PictureWatermarkCreator implements WatermarkCreator {
     private void setImageWatermark(ImageWatermark imageWatermark) throws IOException {
         this.imageStream = imageWatermark.getImageStream();
 
-        Image srcImage = ImageIO.read(inputStream);
-        Image watermarkImage = ImageIO.read(imageStream);
+        byte[] watermarkImageData = IoUtil.readBytes(imageStream);
 
-        int srcImageWidth = srcImage.getWidth(null);
-        int srcImageHeight = srcImage.getHeight(null);
         int watermarkWidth = imageWatermark.getWidth();
         int watermarkHeight = imageWatermark.getHeight();
 
-        BufferedImage srcBufferedImage = new BufferedImage(srcImageWidth, srcImageHeight,
-                BufferedImage.TYPE_INT_RGB);
-
-        Graphics2D g = srcBufferedImage.createGraphics();
-        // 设置对线段的锯齿状边缘处理
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g.drawImage(srcImage.getScaledInstance(srcImageWidth, srcImageHeight, Image.SCALE_SMOOTH), 0, 0, null);
-        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP, imageWatermark.getStyle().getOpacity()));
-
         WatermarkStyle watermarkStyle = imageWatermark.getStyle();
-        double rotation = Math.toRadians(watermarkStyle.getFormat().getRotation());
+        double rotation = watermarkStyle instanceof RepeatWatermarkStyle ? Math.toRadians(watermarkStyle.getFormat().getRotation()) : 0;
+        // 图片水印的原点为左上角
+        SpriteCache.Sprite sprite = SpriteCache.get(
+                Arrays.asList(SecureUtil.sha256().digestHex(watermarkImageData), watermarkWidth, watermarkHeight, watermarkStyle.getOpacity(), rotation),
+                () -> SpriteCache.render(new Rectangle(0, 0, watermarkWidth, watermarkHeight), rotation, watermarkStyle.getOpacity(), g -> {
+                    Image watermarkImage = ImgUtil.read(new ByteArrayInputStream(watermarkImageData));
+                    Image watermarkScaledInstance = watermarkImage.getScaledInstance(watermarkWidth, watermarkHeight, Image.SCALE_SMOOTH);
+                    g.drawImage(watermarkScaledInstance, 0, 0, null);
+                }));
 
-        Image watermarkScaledInstance = watermarkImage.getScaledInstance(watermarkWidth, watermarkHeight, Image.SCALE_SMOOTH);
+        paintWatermark((canvas, srcImageWidth, srcImageHeight) -> {
+            if (watermarkStyle instanceof PositionWatermarkStyle) {
+                PositionWatermarkStyle positionWatermarkStyle = (PositionWatermarkStyle) watermarkStyle;
+                for (PositionWatermarkStyle.Position position : positionWatermarkStyle.getPositions()) {
+                    int[] coordinates = getPositionImageWatermarkCoordinate(position, srcImageWidth, srcImageHeight, watermarkWidth, watermarkHeight);
+                    canvas.drawSprite(sprite, coordinates[0], coordinates[1]);
+                }
+            } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
+                AffineTransform transform = AffineTransform.getRotateInstance(rotation, srcImageWidth / 2.0, srcImageHeight / 2.0);
+                RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
+                for (int rowIndex = -5; rowIndex < repeatWatermarkStyle.getRows(); rowIndex++) {
+                    for (int colIndex = -5; colIndex < repeatWatermarkStyle.getCols(); colIndex++) {
+                        int[] coordinates = getRepeatImageWatermarkCoordinate(repeatWatermarkStyle, watermarkWidth, watermarkHeight, rowIndex, colIndex);
+                        Point2D point = transform.transform(new Point2D.Double(coordinates[0], coordinates[1]), null);
+                        canvas.drawSprite(sprite, point.getX(), point.getY());
+                    }
+                }
+            }
+        });
+    }
 
-        if (watermarkStyle instanceof PositionWatermarkStyle) {
-            PositionWatermarkStyle positionWatermarkStyle = (PositionWatermarkStyle) watermarkStyle;
-            for (PositionWatermarkStyle.Position position : positionWatermarkStyle.getPositions()) {
-                int[] coordinates = getPositionImageWatermarkCoordinate(position, srcImageWidth, srcImageHeight, watermarkWidth, watermarkHeight);
-                g.drawImage(watermarkScaledInstance, coordinates[0], coordinates[1], null);
+    /**
+     * 读取原图片、绘制水印并写入添加水印后的图片：设置了分条高度时逐条处理，否则整张图片处理
+     *
+     * @param painter 水印的绘制方法
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void paintWatermark(WatermarkPainter painter) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = imageInputStream == null ? Collections.emptyIterator() : ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                throw new WatermarkException("不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                if (stripeHeight > 0) {
+                    paintStripes(reader, painter);
+                } else {
+                    this.formatName = outputFormat != null ? outputFormat.toLowerCase() : reader.getFormatName().toLowerCase();
+                    BufferedImage srcImage = toDrawableImage(reader.read(0));
+                    SpriteCanvas canvas = new SpriteCanvas(srcImage, 0);
+                    painter.paint(canvas, srcImage.getWidth(), srcImage.getHeight());
+                    canvas.dispose();
+                    writeImage(srcImage);
+                }
+            } finally {
+                reader.dispose();
             }
-        } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
-            g.rotate(rotation, srcImageWidth / 2.0, srcImageHeight / 2.0);
-            RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
-            for (int rowIndex = -5; rowIndex < repeatWatermarkStyle.getRows(); rowIndex++) {
-                for (int colIndex = -5; colIndex < repeatWatermarkStyle.getCols(); colIndex++) {
-                    int[] coordinates = getRepeatImageWatermarkCoordinate(repeatWatermarkStyle, watermarkWidth, watermarkHeight, rowIndex, colIndex);
-                    g.drawImage(watermarkScaledInstance, coordinates[0], coordinates[1], null);
+        }
+    }
+
+    /**
+     * 逐条读取原图片（只解码当前条的区域），只绘制与当前条相交的水印，并按行写入 PNG 图片，
+     * 内存占用与分条高度成正比，与图片高度无关
+     *
+     * @param reader  原图片读取器
+     * @param painter 水印的绘制方法
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void paintStripes(ImageReader reader, WatermarkPainter painter) throws IOException {
+        if (outputFormat != null && !"png".equalsIgnoreCase(outputFormat)) {
+            throw new WatermarkException("分条处理时只支持输出 PNG 图片");
+        }
+        this.formatName = "png";
+        int srcImageWidth = reader.getWidth(0);
+        int srcImageHeight = reader.getHeight(0);
+        int compressionLevel = compressionQuality == null ? Deflater.DEFAULT_COMPRESSION : Math.round((1 - compressionQuality) * 9);
+        ImageReadParam param = reader.getDefaultReadParam();
+        PngStripeWriter writer = null;
+        try {
+            for (int y = 0; y < srcImageHeight; y += stripeHeight) {
+                Rectangle bounds = new Rectangle(0, y, srcImageWidth, Math.min(stripeHeight, srcImageHeight - y));
+                param.setSourceRegion(bounds);
+                BufferedImage stripe = toDrawableImage(reader.read(0, param));
+                if (writer == null) {
+                    writer = new PngStripeWriter(outputStream, srcImageWidth, srcImageHeight, stripe.getColorModel().hasAlpha(), compressionLevel);
                 }
+                SpriteCanvas canvas = new SpriteCanvas(stripe, y);
+                painter.paint(canvas, srcImageWidth, srcImageHeight);
+                canvas.dispose();
+                writer.writeRows(stripe);
+            }
+            if (writer != null) {
+                writer.finish();
+            }
+        } finally {
+            // 读取或写入失败时也释放压缩器的本地内存
+            if (writer != null) {
+                writer.close();
             }
         }
+    }
+
+    /**
+     * 水印直接绘制在解码后的图片上（不再按原尺寸重新缩放一遍）；
+     * 输出格式支持透明度时保留原图片的透明度，索引颜色、灰度等图片转换为 RGB 或 ARGB 图片（只复制一次）
+     *
+     * @param srcImage 解码后的原图片
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private BufferedImage toDrawableImage(BufferedImage srcImage) {
+        boolean alpha = srcImage.getColorModel().hasAlpha() && !NO_ALPHA_FORMATS.contains(formatName);
+        switch (srcImage.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_3BYTE_BGR:
+                return srcImage;
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                // 输出格式不支持透明度时转换为 RGB 图片
+                return alpha ? srcImage : copyImage(srcImage, false);
+            default:
+                return copyImage(srcImage, alpha);
+        }
+    }
+
+    /*
+     * 将图片复制为 ARGB 或 RGB 图片
+     */
+    private static BufferedImage copyImage(BufferedImage srcImage, boolean alpha) {
+        BufferedImage image = new BufferedImage(srcImage.getWidth(), srcImage.getHeight(),
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.drawImage(srcImage, 0, 0, null);
         g.dispose();
-        ImageIO.write(srcBufferedImage, "png", outputStream);
+        return image;
+    }
+
+    /**
+     * 按输出格式写入添加水印后的图片，压缩质量和渐进式只在该格式支持时设置
+     *
+     * @param image 添加水印后的图片
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void writeImage(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new WatermarkException("不支持输出该格式的图片：" + formatName);
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (compressionQuality != null && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (param.getCompressionType() == null) {
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            }
+            param.setCompressionQuality(compressionQuality);
+        }
+        if (param.canWriteProgressive()) {
+            param.setProgressiveMode(progressive ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        }
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
     }
 
     /**
@@ -275,6 +470,46 @@ public class PictureWatermarkCreator implements WatermarkCreator {
         return new int[]{x, y};
     }
 
+    public String getOutputFormat() {
+        return outputFormat;
+    }
+
+    public void setOutputFormat(String outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    public Float getCompressionQuality() {
+        return compressionQuality;
+    }
+
+    public void setCompressionQuality(Float compressionQuality) {
+        this.compressionQuality = compressionQuality;
+    }
+
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    public int getStripeHeight() {
+        return stripeHeight;
+    }
+
+    public void setStripeHeight(int stripeHeight) {
+        this.stripeHeight = stripeHeight;
+    }
+
+    public boolean isDirectBlend() {
+        return directBlend;
+    }
+
+    public void setDirectBlend(boolean directBlend) {
+        this.directBlend = directBlend;
+    }
+
     @Override
     public void close() throws IOException {
         if (inputStream != null) {
@@ -285,4 +520,80 @@ public class PictureWatermarkCreator implements WatermarkCreator {
         }
         // outputStream 不需要关闭，因添加水印后要返回给调用者
     }
+
+    /**
+     * 水印的绘制方法
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    @FunctionalInterface
+    private interface WatermarkPainter {
+
+        /**
+         * 绘制水印
+         *
+         * @param canvas         画布（按整张图片的坐标绘制）
+         * @param srcImageWidth  原图片宽度
+         * @param srcImageHeight 原图片高度
+         */
+        void paint(SpriteCanvas canvas, int srcImageWidth, int srcImageHeight);
+    }
+
+    /**
+     * 复制精灵图的画布：对应整张图片或当前条，按整张图片的坐标复制精灵图，只复制与画布相交的精灵图
+     * <p>
+     * 开启直接混合且图片类型支持时直接混合像素数组，否则使用 Graphics2D
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private class SpriteCanvas {
+
+        private final BufferedImage image;
+
+        /**
+         * 画布在整张图片中的区域
+         */
+        private final Rectangle bounds;
+
+        private final Graphics2D g;
+
+        SpriteCanvas(BufferedImage image, int y) {
+            this.image = image;
+            this.bounds = new Rectangle(0, y, image.getWidth(), image.getHeight());
+            if (directBlend && RasterBlender.isSupported(image)) {
+                this.g = null;
+            } else {
+                this.g = image.createGraphics();
+                // 水印只绘制在原图片不透明的区域；原图片没有透明度时与 SrcOver 相同，SrcOver 有更快的复制实现
+                g.setComposite(image.getColorModel().hasAlpha() ? AlphaComposite.SrcAtop : AlphaComposite.SrcOver);
+            }
+        }
+
+        /**
+         * 在水印原点 (x, y) 处复制精灵图（透明度已绘制到精灵图中）
+         *
+         * @param sprite 精灵图
+         * @param x      水印原点的 x 坐标
+         * @param y      水印原点的 y 坐标
+         */
+        void drawSprite(SpriteCache.Sprite sprite, double x, double y) {
+            Rectangle spriteBounds = sprite.getBounds(x, y);
+            if (!spriteBounds.intersects(bounds)) {
+                return;
+            }
+            if (g == null) {
+                RasterBlender.blendSrcAtop(image, sprite.getImage(), spriteBounds.x, spriteBounds.y - bounds.y);
+            } else {
+                g.drawImage(sprite.getImage(), spriteBounds.x, spriteBounds.y - bounds.y, null);
+            }
+        }
+
+        void dispose() {
+            if (g != null) {
+                g.dispose();
+            }
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package com.lihtdev.watermark.creator.impl;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.img.ImgUtil;
 import com.lihtdev.watermark.creator.WatermarkCreator;
 import com.lihtdev.watermark.exception.WatermarkException;
@@ -8,41 +7,43 @@ import com.lihtdev.watermark.model.ImageWatermark;
 import com.lihtdev.watermark.model.TextWatermark;
 import com.lihtdev.watermark.model.Watermark;
 import com.lihtdev.watermark.util.ImageUtils;
-import org.apache.poi.ooxml.POIXMLException;
-import org.apache.poi.ooxml.POIXMLTypeLoader;
-import org.apache.poi.ooxml.util.DocumentHelper;
+import com.lihtdev.watermark.util.WordUtils;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.Units;
 import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.apache.poi.xwpf.usermodel.XWPFRun;
-import org.apache.xmlbeans.XmlException;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
-import org.apache.xmlbeans.XmlToken;
-import org.apache.xmlbeans.impl.values.XmlAnyTypeImpl;
 import org.openxmlformats.schemas.drawingml.x2006.main.*;
 import org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture;
 import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.*;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBr;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDrawing;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STBrType;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STSectionMark;
 
+import javax.xml.namespace.QName;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringReader;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 给 Word 文件添加图层水印的实现类（图层水印以图片的形式悬浮于文字之上，不易删除，需挨个选中删除）
  * <p>
- * TODO 该类存在以下问题：1.无法给每页都添加图层水印，只能加到最后一页（不太好确定每页的位置）；2.重复水印和固定位置样式尚未实现
+ * TODO 该类存在以下问题：1.添加到正文时只能给分页符和分节符开始的页添加图层水印，文字自然排到下一页时无法确定页的位置（添加到页眉时没有该问题）；
+ * 2.重复水印和固定位置样式尚未实现
  *
  * @author lihaitao
  * @since 2020/7/17
@@ -54,6 +55,16 @@ public class WordLayerWatermarkCreator implements WatermarkCreator {
      */
     private static final int ROT_RATIO = 60000;
 
+    /**
+     * <pic:pic></pic:pic> 节点的命名空间
+     */
+    private static final String PICTURE_NAMESPACE = CTPicture.type.getName().getNamespaceURI();
+
+    /**
+     * <pic:pic></pic:pic> 节点名称
+     */
+    private static final QName PICTURE_ELEMENT = new QName(PICTURE_NAMESPACE, "pic", "pic");
+
     /**
      * 原文件输入流
      */
@@ -69,6 +80,28 @@ public class WordLayerWatermarkCreator implements WatermarkCreator {
      */
     private XWPFDocument doc;
 
+    /**
+     * 水印的添加位置
+     */
+    private PlacementMode placementMode = PlacementMode.PAGE_BREAKS;
+
+    /**
+     * 下一个图片的绘图对象 ID（从文档中已有的最大 ID 之后开始）
+     */
+    private long drawingId;
+
+    public WordLayerWatermarkCreator() {
+    }
+
+    /**
+     * 创建 Word 图层水印实例
+     *
+     * @param placementMode 水印的添加位置
+     */
+    public WordLayerWatermarkCreator(PlacementMode placementMode) {
+        this.placementMode = placementMode;
+    }
+
     /**
      * 给Word文件添加图层水印
      *
@@ -99,7 +132,7 @@ public class WordLayerWatermarkCreator implements WatermarkCreator {
      * @author lihaitao
      * @since 2020/7/22
      */
-    private void setTextWatermark(TextWatermark textWatermark) {
+    private void setTextWatermark(TextWatermark textWatermark) throws IOException {
         BufferedImage bufferedImage = ImageUtils.createImage(textWatermark);
         ImageWatermark imageWatermark = new ImageWatermark(null);
         imageWatermark.setStyle(textWatermark.getStyle());
@@ -117,188 +150,244 @@ public class WordLayerWatermarkCreator implements WatermarkCreator {
      * @author lihaitao
      * @since 2020/7/22
      */
-    private void setImageWatermark(ImageWatermark imageWatermark) {
+    private void setImageWatermark(ImageWatermark imageWatermark) throws IOException {
         this.imageStream = imageWatermark.getImageStream();
+        byte[] pictureData = IOUtils.toByteArray(imageStream);
         int pictureType = getPictureType(imageWatermark);
         int cx = Units.toEMU(imageWatermark.getWidth());
         int cy = Units.toEMU(imageWatermark.getHeight());
         int rotation = imageWatermark.getStyle().getFormat().getRotation() * ROT_RATIO;
 
-        for (int pos = 0; pos < this.doc.getParagraphs().size(); pos++) {
-            XWPFParagraph paragraph = this.doc.getParagraphs().get(pos);
-            if (isPageBreak(paragraph) || paragraph.isPageBreak()) {
-                XWPFParagraph imageParagraph = createImageParagraph(pictureType, cx, cy, rotation);
-                this.doc.setParagraph(imageParagraph, pos - 1);
+        try {
+            this.drawingId = WordUtils.getMaxDrawingId(this.doc) + 1;
+            if (placementMode == PlacementMode.SECTION_HEADERS) {
+                setSectionHeaderImageWatermark(pictureData, pictureType, cx, cy, rotation);
+            } else {
+                setPageBreakImageWatermark(this.doc.addPictureData(pictureData, pictureType), cx, cy, rotation);
             }
+        } catch (InvalidFormatException e) {
+            throw new WatermarkException("水印图片类型错误：" + e.getMessage(), e);
         }
-        createImageParagraph(pictureType, cx, cy, rotation);
     }
 
     /**
-     * 判断 paragraph 的类型是否为 page，即是否为分页符
+     * 在各节的首页、奇数页和偶数页页眉中添加浮动图片，每一页都显示且只显示一个水印，不需要遍历正文
      *
-     * @param paragraph 段落
+     * @param pictureData 图片数据
+     * @param pictureType 图片类型 #getPictureType(ImageWatermark)
+     * @param cx          图片宽度
+     * @param cy          图片高度
+     * @param rotation    旋转度（角度 * ROT_RATIO）
      * @author lihaitao
      * @since 2020/7/22
      */
-    private boolean isPageBreak(XWPFParagraph paragraph) {
-        List<CTR> rList = paragraph.getCTP().getRList();
-        if (CollUtil.isNotEmpty(rList)) {
-            List<CTBr> brList = rList.get(0).getBrList();
-            return CollUtil.isNotEmpty(brList) && brList.get(0).getType().equals(STBrType.PAGE);
+    private void setSectionHeaderImageWatermark(byte[] pictureData, int pictureType, int cx, int cy, int rotation)
+            throws InvalidFormatException {
+        for (XWPFHeader header : WordUtils.getSectionHeaders(this.doc)) {
+            // 相同的图片数据在包中只保存一个部件，每个页眉单独建立关系
+            String relationId = header.addPictureData(pictureData, pictureType);
+            createImageRun(WordUtils.getFirstParagraph(header).getCTP().addNewR(), relationId, cx, cy, rotation);
         }
-        return false;
     }
 
     /**
-     * 添加图片段落
+     * 一次遍历正文，在每页开头（文档开头、分页符之后、段前分页的段落、新页开始的节）添加浮动图片，
+     * 各页通过同一个关系 ID 引用图片
      *
-     * @param pictureType 图片类型 #getPictureType(ImageWatermark)
-     * @param cx          图片宽度
-     * @param cy          图片高度
-     * @param rotation    旋转度（角度 * ROT_RATIO）
+     * @param relationId 图片的关系 ID
+     * @param cx         图片宽度
+     * @param cy         图片高度
+     * @param rotation   旋转度（角度 * ROT_RATIO）
      * @author lihaitao
-     * @see #getPictureType(ImageWatermark)
-     * @see #ROT_RATIO
      * @since 2020/7/22
      */
-    private XWPFParagraph createImageParagraph(int pictureType, int cx, int cy, int rotation) {
-        XWPFParagraph paragraph = this.doc.createParagraph();
-        XWPFRun run = paragraph.createRun();
-        CTR ctr = run.getCTR();
-
-        try {
-            // Work out what to add the picture to, then add both the
-            //  picture and the relationship for it
-            String relationId = this.doc.addPictureData(imageStream, pictureType);
-
-            // Create the drawing entry for it
-            CTDrawing drawing = ctr.addNewDrawing();
-            CTAnchor anchor = drawing.addNewAnchor();
-            addNewGraphic(anchor);
-
-            // Setup the anchor
-            anchor.setDistT(0);
-            anchor.setDistR(0);
-            anchor.setDistB(0);
-            anchor.setDistL(0);
-            anchor.setAllowOverlap(true);
-            anchor.setBehindDoc(true);
-            anchor.setLayoutInCell(true);
-            anchor.setLocked(false);
-
-            CTPosH posH = anchor.addNewPositionH();
-            posH.setRelativeFrom(STRelFromH.MARGIN);
-            posH.setAlign(STAlignH.CENTER);
-            CTPosV posV = anchor.addNewPositionV();
-            posV.setRelativeFrom(STRelFromV.MARGIN);
-            posV.setAlign(STAlignV.CENTER);
-
-            CTNonVisualDrawingProps docPr = anchor.addNewDocPr();
-            long id = paragraph.getDocument().getNextPicNameNumber(pictureType);
-            docPr.setId(id);
-            /* This name is not visible in Word 2010 anywhere. */
-            docPr.setName("Drawing " + id);
-            docPr.setDescr("WordPictureWatermark");
-
-            CTPositiveSize2D extent = anchor.addNewExtent();
-            extent.setCx(cx);
-            extent.setCy(cy);
-
-            // Grab the picture object
-            CTGraphicalObject graphic = anchor.getGraphic();
-            CTGraphicalObjectData graphicData = graphic.getGraphicData();
-            org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture pic = getCTPictures(graphicData).get(0);
-
-            // Set it up
-            org.openxmlformats.schemas.drawingml.x2006.picture.CTPictureNonVisual nvPicPr = pic.addNewNvPicPr();
-
-            CTNonVisualDrawingProps cNvPr = nvPicPr.addNewCNvPr();
-            /* use "0" for the id. See ECM-576, 20.2.2.3 */
-            cNvPr.setId(0L);
-            /* This name is not visible in Word 2010 anywhere */
-            cNvPr.setName("Picture " + id);
-            cNvPr.setDescr("WordPictureWatermark");
-
-            CTNonVisualPictureProperties cNvPicPr = nvPicPr.addNewCNvPicPr();
-            cNvPicPr.addNewPicLocks().setNoChangeAspect(true);
-
-            CTBlipFillProperties blipFill = pic.addNewBlipFill();
-            blipFill.addNewStretch().addNewFillRect();
-            CTBlip blip = blipFill.addNewBlip();
-            blip.setEmbed(relationId);
-
-            CTShapeProperties spPr = pic.addNewSpPr();
-            CTTransform2D xfrm = spPr.addNewXfrm();
-            // 旋转
-            xfrm.setRot(rotation);
-
-            CTPoint2D off = xfrm.addNewOff();
-            off.setX(0);
-            off.setY(0);
-
-            CTPositiveSize2D ext = xfrm.addNewExt();
-            ext.setCx(cx);
-            ext.setCy(cy);
-
-            CTPresetGeometry2D presetGeometry2D = spPr.addNewPrstGeom();
-            presetGeometry2D.setPrst(STShapeType.RECT);
-            presetGeometry2D.addNewAvLst();
-        } catch (InvalidFormatException | IOException e) {
-            throw new WatermarkException("水印图片类型错误：" + e.getMessage(), e);
+    private void setPageBreakImageWatermark(String relationId, int cx, int cy, int rotation) {
+        List<CTSectPr> sections = WordUtils.getSections(this.doc);
+        int sectionIndex = 0;
+        // 文档开头是第一页
+        boolean newPage = true;
+        for (IBodyElement element : this.doc.getBodyElements()) {
+            if (element instanceof XWPFTable) {
+                XWPFTableCell cell = getFirstCell((XWPFTable) element);
+                if (newPage && cell != null) {
+                    // 表格不能直接包含图片，添加到第一个单元格的第一个段落中
+                    XWPFParagraph paragraph = cell.getParagraphs().isEmpty() ? cell.addParagraph() : cell.getParagraphArray(0);
+                    createImageRun(paragraph.getCTP().insertNewR(0), relationId, cx, cy, rotation);
+                    newPage = false;
+                }
+            } else if (element instanceof XWPFParagraph) {
+                XWPFParagraph paragraph = (XWPFParagraph) element;
+                CTP ctp = paragraph.getCTP();
+                if (newPage || paragraph.isPageBreak()) {
+                    createImageRun(ctp.insertNewR(0), relationId, cx, cy, rotation);
+                    newPage = false;
+                }
+                // 分页符之后的内容在新的一页，从后向前添加，避免插入的运行改变序号
+                for (int pos = ctp.sizeOfRArray() - 1; pos >= 0; pos--) {
+                    if (isPageBreak(ctp.getRArray(pos))) {
+                        createImageRun(ctp.insertNewR(pos + 1), relationId, cx, cy, rotation);
+                    }
+                }
+                if (ctp.isSetPPr() && ctp.getPPr().isSetSectPr()) {
+                    // 分节符：下一节的类型决定是否从新的一页开始（最后一节没有属性时为下一页）
+                    sectionIndex++;
+                    newPage = sectionIndex >= sections.size() || isNewPageSection(sections.get(sectionIndex));
+                }
+            }
         }
-        return paragraph;
+    }
+
+    /*
+     * 获取表格的第一个单元格，表格为空时返回 null
+     */
+    private XWPFTableCell getFirstCell(XWPFTable table) {
+        XWPFTableRow row = table.getRow(0);
+        return row == null ? null : row.getCell(0);
     }
 
     /**
-     * 给 <wp:anchor></wp:anchor> 节点下添加 <a:graphic></a:graphic> 节点
+     * 判断节是否从新的一页开始（未设置类型时为下一页，连续和分栏的节不换页）
      *
-     * @param anchor <wp:anchor></wp:anchor> 节点
+     * @param sectPr 节的属性
      * @author lihaitao
-     * @since 2020/7/5
+     * @since 2020/7/22
      */
-    private void addNewGraphic(CTAnchor anchor) throws IOException {
-        // Do the fiddly namespace bits on the inline
-        // (We need full control of what goes where and as what)
-        String xml =
-                "<a:graphic xmlns:a=\"" + CTGraphicalObject.type.getName().getNamespaceURI() + "\">" +
-                        "<a:graphicData uri=\"" + org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI() + "\">" +
-                        "<pic:pic xmlns:pic=\"" + org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI() + "\" />" +
-                        "</a:graphicData>" +
-                        "</a:graphic>";
-        InputSource is = new InputSource(new StringReader(xml));
-        try {
-            org.w3c.dom.Document document = DocumentHelper.readDocument(is);
-            anchor.set(XmlToken.Factory.parse(document.getDocumentElement(), POIXMLTypeLoader.DEFAULT_XML_OPTIONS));
-        } catch (SAXException | XmlException e) {
-            throw new WatermarkException("给Word文件添加图片水印时发生错误：" + e.getMessage(), e);
+    private boolean isNewPageSection(CTSectPr sectPr) {
+        if (sectPr.getType() == null || sectPr.getType().getVal() == null) {
+            return true;
         }
+        STSectionMark.Enum type = sectPr.getType().getVal();
+        return type != STSectionMark.CONTINUOUS && type != STSectionMark.NEXT_COLUMN;
     }
 
     /**
-     * 获取 <pic:pic></pic:pic> 节点
+     * 判断运行中是否包含分页符
      *
+     * @param ctr 运行
      * @author lihaitao
-     * @since 2020-07-05
+     * @since 2020/7/22
      */
-    private List<CTPicture> getCTPictures(XmlObject o) {
-        List<org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture> pics = new ArrayList<>();
-        String path = "declare namespace pic='" + org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI() + "' .//pic:pic";
-        XmlObject[] picts = o.selectPath(path);
-        for (XmlObject pict : picts) {
-            if (pict instanceof XmlAnyTypeImpl) {
-                // Pesky XmlBeans bug - see Bugzilla #49934
-                try {
-                    pict = org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.Factory.parse(pict.toString(), POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
-                } catch (XmlException e) {
-                    throw new POIXMLException(e);
-                }
-            }
-            if (pict instanceof org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture) {
-                pics.add((org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture) pict);
+    private boolean isPageBreak(CTR ctr) {
+        for (CTBr br : ctr.getBrList()) {
+            if (br.getType() == STBrType.PAGE) {
+                return true;
             }
         }
-        return pics;
+        return false;
+    }
+
+    /**
+     * 添加图片运行
+     *
+     * @param ctr        新的运行
+     * @param relationId 图片的关系 ID
+     * @param cx         图片宽度
+     * @param cy         图片高度
+     * @param rotation   旋转度（角度 * ROT_RATIO）
+     * @author lihaitao
+     * @see #ROT_RATIO
+     * @since 2020/7/22
+     */
+    private void createImageRun(CTR ctr, String relationId, int cx, int cy, int rotation) {
+        // Create the drawing entry for it
+        CTDrawing drawing = ctr.addNewDrawing();
+        CTAnchor anchor = drawing.addNewAnchor();
+        CTPicture pic = addNewGraphic(anchor);
+
+        // Setup the anchor
+        anchor.setDistT(0);
+        anchor.setDistR(0);
+        anchor.setDistB(0);
+        anchor.setDistL(0);
+        anchor.setSimplePos2(false);
+        anchor.setRelativeHeight(0);
+        anchor.setAllowOverlap(true);
+        anchor.setBehindDoc(true);
+        // 添加到表格中时也相对于页边距定位
+        anchor.setLayoutInCell(false);
+        anchor.setLocked(false);
+
+        CTPoint2D simplePos = anchor.addNewSimplePos();
+        simplePos.setX(0);
+        simplePos.setY(0);
+        anchor.addNewWrapNone();
+
+        CTPosH posH = anchor.addNewPositionH();
+        posH.setRelativeFrom(STRelFromH.MARGIN);
+        posH.setAlign(STAlignH.CENTER);
+        CTPosV posV = anchor.addNewPositionV();
+        posV.setRelativeFrom(STRelFromV.MARGIN);
+        posV.setAlign(STAlignV.CENTER);
+
+        CTNonVisualDrawingProps docPr = anchor.addNewDocPr();
+        long id = drawingId++;
+        docPr.setId(id);
+        /* This name is not visible in Word 2010 anywhere. */
+        docPr.setName("Drawing " + id);
+        docPr.setDescr("WordPictureWatermark");
+
+        CTPositiveSize2D extent = anchor.addNewExtent();
+        extent.setCx(cx);
+        extent.setCy(cy);
+
+        // Set it up
+        org.openxmlformats.schemas.drawingml.x2006.picture.CTPictureNonVisual nvPicPr = pic.addNewNvPicPr();
+
+        CTNonVisualDrawingProps cNvPr = nvPicPr.addNewCNvPr();
+        /* use "0" for the id. See ECM-576, 20.2.2.3 */
+        cNvPr.setId(0L);
+        /* This name is not visible in Word 2010 anywhere */
+        cNvPr.setName("Picture " + id);
+        cNvPr.setDescr("WordPictureWatermark");
+
+        CTNonVisualPictureProperties cNvPicPr = nvPicPr.addNewCNvPicPr();
+        cNvPicPr.addNewPicLocks().setNoChangeAspect(true);
+
+        CTBlipFillProperties blipFill = pic.addNewBlipFill();
+        blipFill.addNewStretch().addNewFillRect();
+        CTBlip blip = blipFill.addNewBlip();
+        blip.setEmbed(relationId);
+
+        CTShapeProperties spPr = pic.addNewSpPr();
+        CTTransform2D xfrm = spPr.addNewXfrm();
+        // 旋转
+        xfrm.setRot(rotation);
+
+        CTPoint2D off = xfrm.addNewOff();
+        off.setX(0);
+        off.setY(0);
+
+        CTPositiveSize2D ext = xfrm.addNewExt();
+        ext.setCx(cx);
+        ext.setCy(cy);
+
+        CTPresetGeometry2D presetGeometry2D = spPr.addNewPrstGeom();
+        presetGeometry2D.setPrst(STShapeType.RECT);
+        presetGeometry2D.addNewAvLst();
+    }
+
+    /**
+     * 给 <wp:anchor></wp:anchor> 节点下添加 <a:graphic></a:graphic> 节点，直接创建节点对象，不拼接和解析 XML 字符串
+     *
+     * @param anchor <wp:anchor></wp:anchor> 节点
+     * @return <pic:pic></pic:pic> 节点
+     * @author lihaitao
+     * @since 2020/7/5
+     */
+    private CTPicture addNewGraphic(CTAnchor anchor) {
+        CTGraphicalObjectData graphicData = anchor.addNewGraphic().addNewGraphicData();
+        graphicData.setUri(PICTURE_NAMESPACE);
+        // <a:graphicData> 的内容为任意元素，用游标插入 <pic:pic>，XmlBeans 按全局元素声明创建对应的节点对象
+        XmlCursor cursor = graphicData.newCursor();
+        try {
+            cursor.toEndToken();
+            cursor.beginElement(PICTURE_ELEMENT);
+            cursor.toParent();
+            XmlObject pic = cursor.getObject();
+            return (CTPicture) (pic instanceof CTPicture ? pic : pic.changeType(CTPicture.type));
+        } finally {
+            cursor.dispose();
+        }
     }
 
     /**
@@ -336,6 +425,14 @@ public class WordLayerWatermarkCreator implements WatermarkCreator {
         }
     }
 
+    public PlacementMode getPlacementMode() {
+        return placementMode;
+    }
+
+    public void setPlacementMode(PlacementMode placementMode) {
+        this.placementMode = placementMode;
+    }
+
     /**
      * 实现自动关闭流的方法
      *
@@ -356,4 +453,23 @@ public class WordLayerWatermarkCreator implements WatermarkCreator {
         // outputStream 不需要关闭，因添加水印后要返回给调用者
     }
 
+    /**
+     * 水印的添加位置
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public enum PlacementMode {
+
+        /**
+         * 添加到正文中每页的开头（按分页符和分节符确定），文字自然排到下一页时无法添加
+         */
+        PAGE_BREAKS,
+
+        /**
+         * 添加到各节的页眉中，每一页都有且只有一个水印
+         */
+        SECTION_HEADERS
+    }
+
 }
@@ -1,36 +1,48 @@
 package com.lihtdev.watermark.creator.impl;
 
+import cn.hutool.core.img.ImgUtil;
 import com.lihtdev.watermark.creator.WatermarkCreator;
 import com.lihtdev.watermark.exception.WatermarkException;
 import com.lihtdev.watermark.model.*;
+import com.lihtdev.watermark.util.FontUtils;
+import com.lihtdev.watermark.util.ImageUtils;
+import com.lihtdev.watermark.util.OoxmlPackageWriter;
+import com.lihtdev.watermark.util.OoxmlUtils;
 import com.lihtdev.watermark.util.TextUtils;
+import com.lihtdev.watermark.util.WordUtils;
 import com.microsoft.schemas.office.office.CTLock;
 import com.microsoft.schemas.vml.*;
-import org.apache.poi.ooxml.POIXMLException;
-import org.apache.poi.ooxml.POIXMLTypeLoader;
-import org.apache.poi.ooxml.util.DocumentHelper;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.Units;
-import org.apache.poi.wp.usermodel.HeaderFooterType;
 import org.apache.poi.xwpf.usermodel.*;
-import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
-import org.apache.xmlbeans.XmlToken;
-import org.apache.xmlbeans.impl.values.XmlAnyTypeImpl;
 import org.openxmlformats.schemas.drawingml.x2006.main.*;
 import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.*;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDocument1;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDrawing;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPicture;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
+import javax.imageio.ImageIO;
+import javax.xml.namespace.QName;
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.StringReader;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
 /**
@@ -61,6 +73,21 @@ public class WordWatermarkCreator implements WatermarkCreator {
      */
     private static final int CONTRAST = -70001;
 
+    /**
+     * WordprocessingML 的命名空间
+     */
+    private static final String WORDPROCESSINGML_NAMESPACE = CTDocument1.type.getName().getNamespaceURI();
+
+    /**
+     * <pic:pic></pic:pic> 节点的命名空间
+     */
+    private static final String PICTURE_NAMESPACE = org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI();
+
+    /**
+     * <pic:pic></pic:pic> 节点名称
+     */
+    private static final QName PICTURE_ELEMENT = new QName(PICTURE_NAMESPACE, "pic", "pic");
+
     /**
      * 原文件输入流
      */
@@ -76,6 +103,49 @@ public class WordWatermarkCreator implements WatermarkCreator {
      */
     private XWPFDocument doc;
 
+    /**
+     * 重复水印的添加方式
+     */
+    private RepeatMode repeatMode = RepeatMode.SHAPES;
+
+    /**
+     * 添加水印的页眉（覆盖所有节的首页、奇数页和偶数页页眉）
+     */
+    private List<XWPFHeader> watermarkHeaders;
+
+    /**
+     * 下一个图片的绘图对象 ID（从文档中已有的最大 ID 之后开始，每个页眉中的图片各占一个）
+     */
+    private long drawingId;
+
+    /**
+     * 是否原样复制未修改的部件：只重新生成水印修改的部件（主文档、页眉、关系和内容类型）及新增的图片，
+     * 其他部件（如文档中的图片）按压缩数据原样复制，不经过 POI 重新压缩
+     */
+    private boolean rawCopy = false;
+
+    /**
+     * 原文件（原样复制未修改的部件时使用）
+     */
+    private ZipFile zipFile;
+
+    /**
+     * 输入流写入的临时文件（原样复制未修改的部件时使用）
+     */
+    private Path tempFile;
+
+    public WordWatermarkCreator() {
+    }
+
+    /**
+     * 创建 Word 水印实例
+     *
+     * @param repeatMode 重复水印的添加方式
+     */
+    public WordWatermarkCreator(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
     /**
      * 给 .docx 文件添加水印
      *
@@ -87,16 +157,111 @@ public class WordWatermarkCreator implements WatermarkCreator {
      */
     @Override
     public void create(InputStream inputStream, OutputStream outputStream, Watermark watermark) throws IOException {
-        this.inputStream = inputStream;
-        this.doc = new XWPFDocument(inputStream);
+        this.inputStream = FileMagic.prepareToCheckMagic(inputStream);
+        if (FileMagic.valueOf(this.inputStream) == FileMagic.OLE2) {
+            // HWPF 不能在 .doc 文件中新建页眉或添加图形
+            throw new WatermarkException("暂不支持 .doc 文件，请先转换为 .docx 文件");
+        }
+        if (rawCopy) {
+            // zip 文件需要随机读取，先写入临时文件
+            this.tempFile = Files.createTempFile("watermark", ".docx");
+            Files.copy(this.inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            openPackage(tempFile);
+        } else {
+            this.doc = new XWPFDocument(this.inputStream);
+        }
+        setWatermark(outputStream, watermark);
+    }
+
+    /**
+     * 给本地 .docx 文件添加水印，原样复制未修改的部件时直接随机读取文件
+     *
+     * @param path         文件路径
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    @Override
+    public void create(Path path, OutputStream outputStream, Watermark watermark) throws IOException {
+        if (!rawCopy || FileMagic.valueOf(path.toFile()) != FileMagic.OOXML) {
+            WatermarkCreator.super.create(path, outputStream, watermark);
+            return;
+        }
+        openPackage(path);
+        setWatermark(outputStream, watermark);
+    }
 
+    /**
+     * 打开文件（POI 按需读取部件，文档中的图片不会读入内存）
+     *
+     * @param path 文件路径
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void openPackage(Path path) throws IOException {
+        this.zipFile = new ZipFile(path.toFile());
+        try {
+            // 需要可写才能添加页眉和图片，关闭时放弃修改，不会写回原文件
+            this.doc = new XWPFDocument(OPCPackage.open(path.toFile(), PackageAccess.READ_WRITE));
+        } catch (InvalidFormatException e) {
+            throw new WatermarkException("Word文件格式错误：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 设置水印并写入输出流
+     *
+     * @param outputStream 添加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void setWatermark(OutputStream outputStream, Watermark watermark) throws IOException {
+        this.drawingId = WordUtils.getMaxDrawingId(doc) + 1;
         if (watermark instanceof TextWatermark) {
             setTextWatermark((TextWatermark) watermark);
         } else if (watermark instanceof ImageWatermark) {
             setImageWatermark((ImageWatermark) watermark);
         }
 
-        doc.write(outputStream);
+        if (rawCopy) {
+            writePackage(outputStream);
+        } else {
+            doc.write(outputStream);
+        }
+    }
+
+    /**
+     * 只重新生成主文档、页眉及其关系部件、新增的部件和内容类型部件，其他部件按压缩数据原样复制
+     *
+     * @param outputStream 添加水印后的文件输出流
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void writePackage(OutputStream outputStream) throws IOException {
+        OoxmlPackageWriter packageWriter = new OoxmlPackageWriter(zipFile);
+        try {
+            // 主文档和页眉按 POI 提交时的方式序列化
+            PackagePart documentPart = doc.getPackagePart();
+            packageWriter.putXmlPart(documentPart, doc.getDocument(), new QName(WORDPROCESSINGML_NAMESPACE, "document"));
+            packageWriter.putRelationships(documentPart);
+            for (POIXMLDocumentPart relation : doc.getRelations()) {
+                // 新建的页眉不在 getHeaderList() 中，从文档的关系中获取
+                if (relation instanceof XWPFHeader) {
+                    XWPFHeader header = (XWPFHeader) relation;
+                    packageWriter.putXmlPart(header.getPackagePart(), header._getHdrFtr(), new QName(WORDPROCESSINGML_NAMESPACE, "hdr"));
+                    packageWriter.putRelationships(header.getPackagePart());
+                }
+            }
+
+            org.w3c.dom.Document contentTypes = packageWriter.readXmlPart(OoxmlUtils.CONTENT_TYPES_PART_NAME);
+            packageWriter.putNewParts(doc.getPackage(), contentTypes);
+            packageWriter.putPart(OoxmlUtils.CONTENT_TYPES_PART_NAME, contentTypes);
+        } catch (InvalidFormatException e) {
+            throw new WatermarkException("Word文件格式错误：" + e.getMessage(), e);
+        }
+        packageWriter.write(outputStream);
     }
 
     /**
@@ -106,9 +271,14 @@ public class WordWatermarkCreator implements WatermarkCreator {
      * @author lihaitao
      * @since 2020-07-05
      */
-    private void setTextWatermark(TextWatermark textWatermark) {
+    private void setTextWatermark(TextWatermark textWatermark) throws IOException {
         WatermarkStyle watermarkStyle = textWatermark.getStyle();
-        if (watermarkStyle instanceof RepeatWatermarkStyle) {
+        if (repeatMode == RepeatMode.HEADER_IMAGE && watermarkStyle instanceof RepeatWatermarkStyle) {
+            // 文字颜色已包含透明度
+            BufferedImage watermarkImage = ImageUtils.createImage(textWatermark);
+            createRepeatImageWatermark(watermarkImage, watermarkImage.getWidth(), watermarkImage.getHeight(),
+                    (RepeatWatermarkStyle) watermarkStyle);
+        } else if (watermarkStyle instanceof RepeatWatermarkStyle) {
             RepeatWatermarkStyle repeatWatermarkStyle = (RepeatWatermarkStyle) watermarkStyle;
             for (int rowIndex = -5; rowIndex < repeatWatermarkStyle.getRows(); rowIndex++) {
                 for (int colIndex = -5; colIndex < repeatWatermarkStyle.getCols(); colIndex++) {
@@ -132,7 +302,14 @@ public class WordWatermarkCreator implements WatermarkCreator {
      * @since 2020-07-05
      */
     private void setImageWatermark(ImageWatermark imageWatermark) throws IOException {
-        createImageWatermark(imageWatermark);
+        if (repeatMode == RepeatMode.HEADER_IMAGE && imageWatermark.getStyle() instanceof RepeatWatermarkStyle) {
+            this.imageStream = imageWatermark.getImageStream();
+            BufferedImage watermarkImage = ImageUtils.setOpacity(ImgUtil.read(imageStream), imageWatermark.getStyle().getOpacity());
+            createRepeatImageWatermark(watermarkImage, imageWatermark.getWidth(), imageWatermark.getHeight(),
+                    (RepeatWatermarkStyle) imageWatermark.getStyle());
+        } else {
+            createImageWatermark(imageWatermark);
+        }
     }
 
     /**
@@ -145,12 +322,6 @@ public class WordWatermarkCreator implements WatermarkCreator {
      * @since 2020-07-05
      */
     private void createTextWatermark(TextWatermark textWatermark, String style, int index) {
-        XWPFParagraph paragraph = createDefaultHeaderParagraph();
-        XWPFRun run = paragraph.createRun();
-        CTR ctr = run.getCTR();
-        // 开始加水印
-        CTRPr ctrpr = ctr.addNewRPr();
-        ctrpr.addNewNoProof();
         CTGroup group = CTGroup.Factory.newInstance();
         CTShapetype shapeType = group.addNewShapetype();
         CTTextPath shapeTypeTextPath = shapeType.addNewTextpath();
@@ -172,24 +343,28 @@ public class WordWatermarkCreator implements WatermarkCreator {
         CTTextPath shapeTextPath = shape.addNewTextpath();
         shapeTextPath.setStyle("font-family:" + textWatermark.getFontFamily() + ";font-size:" + textWatermark.getFontSize() + "pt");
         shapeTextPath.setString(textWatermark.getText());
-        CTPicture pict = ctr.addNewPict();
-        pict.set(group);
+        // 形状只创建一次，复制到各个页眉中
+        for (XWPFHeader header : getWatermarkHeaders()) {
+            CTR ctr = WordUtils.getFirstParagraph(header).createRun().getCTR();
+            // 开始加水印
+            CTRPr ctrpr = ctr.addNewRPr();
+            ctrpr.addNewNoProof();
+            CTPicture pict = ctr.addNewPict();
+            pict.set(group);
+        }
     }
 
     /**
-     * 创建默认的页眉
+     * 获取添加水印的页眉（覆盖所有节的首页、奇数页和偶数页），只获取一次
      *
      * @author lihaitao
-     * @since 2020-07-05
+     * @since 2020/7/22
      */
-    private XWPFParagraph createDefaultHeaderParagraph() {
-        // 如果之前已经创建过 DEFAULT 的 Header，将会复用之
-        XWPFHeader header = doc.createHeader(HeaderFooterType.DEFAULT);
-        int size = header.getParagraphs().size();
-        if (size == 0) {
-            header.createParagraph();
+    private List<XWPFHeader> getWatermarkHeaders() {
+        if (watermarkHeaders == null) {
+            watermarkHeaders = WordUtils.getSectionHeaders(doc);
         }
-        return header.getParagraphArray(0);
+        return watermarkHeaders;
     }
 
     /**
@@ -241,9 +416,9 @@ public class WordWatermarkCreator implements WatermarkCreator {
     private StringBuilder getTextWatermarkStyle(TextWatermark textWatermark) {
         StringBuilder style = new StringBuilder();
         style.append("position:absolute");
-        int[] textWidthAndHeight = TextUtils.getTextWidthAndHeight(textWatermark.getFontSize(), textWatermark.getText());
-        style.append(";width:").append(textWidthAndHeight[0]).append("pt");
-        style.append(";height:").append(textWidthAndHeight[1]).append("pt");
+        Font font = FontUtils.getFont(textWatermark.getFontFamily(), Font.PLAIN, textWatermark.getFontSize());
+        style.append(";width:").append(TextUtils.getTextWidth(font, textWatermark.getText())).append("pt");
+        style.append(";height:").append(TextUtils.getTextHeight(font, textWatermark.getText())).append("pt");
         style.append(";z-index:-251654144");
         style.append(";mso-wrap-edited:f");
         style.append(";mso-position-horizontal-relative:").append("page");
@@ -263,44 +438,103 @@ public class WordWatermarkCreator implements WatermarkCreator {
      */
     private void createImageWatermark(ImageWatermark imageWatermark) throws IOException {
         this.imageStream = imageWatermark.getImageStream();
+        // 图片只读取一次，各页眉添加相同的图片数据时共用一个图片部件
+        byte[] pictureData = IOUtils.toByteArray(imageStream);
         int pictureType = getPictureType(imageWatermark);
         int cx = Units.toEMU(imageWatermark.getWidth());
         int cy = Units.toEMU(imageWatermark.getHeight());
+        int rotation = imageWatermark.getStyle().getFormat().getRotation() * ROT_RATIO;
 
-        XWPFParagraph paragraph = createDefaultHeaderParagraph();
+        for (XWPFHeader header : getWatermarkHeaders()) {
+            CTAnchor anchor = createPictureAnchor(header, drawingId++, pictureData, pictureType, cx, cy, rotation, true);
+            CTPosH posH = anchor.addNewPositionH();
+            posH.setRelativeFrom(STRelFromH.MARGIN);
+            posH.setAlign(STAlignH.CENTER);
+            CTPosV posV = anchor.addNewPositionV();
+            posV.setRelativeFrom(STRelFromV.MARGIN);
+            posV.setAlign(STAlignV.CENTER);
+        }
+    }
+
+    /**
+     * 创建重复的图片水印：将所有重复的水印绘制为一张图片，从页面左上角开始铺满，每个页眉只有一个图片
+     *
+     * @param watermarkImage       水印图片（已包含透明度）
+     * @param watermarkWidth       水印宽度
+     * @param watermarkHeight      水印高度
+     * @param repeatWatermarkStyle 重复水印样式
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private void createRepeatImageWatermark(BufferedImage watermarkImage, int watermarkWidth, int watermarkHeight,
+                                            RepeatWatermarkStyle repeatWatermarkStyle) throws IOException {
+        BufferedImage repeatImage = ImageUtils.createRepeatImage(watermarkImage, watermarkWidth, watermarkHeight, repeatWatermarkStyle);
+        ByteArrayOutputStream pictureStream = new ByteArrayOutputStream();
+        ImageIO.write(repeatImage, "png", pictureStream);
+        byte[] pictureData = pictureStream.toByteArray();
+        int cx = Units.pixelToEMU(repeatImage.getWidth());
+        int cy = Units.pixelToEMU(repeatImage.getHeight());
+
+        for (XWPFHeader header : getWatermarkHeaders()) {
+            // 旋转和透明度已绘制到图片中
+            CTAnchor anchor = createPictureAnchor(header, drawingId++, pictureData, Document.PICTURE_TYPE_PNG, cx, cy, 0, false);
+            CTPosH posH = anchor.addNewPositionH();
+            posH.setRelativeFrom(STRelFromH.PAGE);
+            posH.setPosOffset(0);
+            CTPosV posV = anchor.addNewPositionV();
+            posV.setRelativeFrom(STRelFromV.PAGE);
+            posV.setPosOffset(0);
+        }
+    }
+
+    /**
+     * 在页眉的第一个段落中添加衬于文字下方的浮动图片，位置由调用者设置
+     *
+     * @param header      页眉
+     * @param id          绘图对象 ID（文档中唯一）
+     * @param pictureData 图片数据
+     * @param pictureType 图片类型代码
+     * @param cx          图片宽度（EMU）
+     * @param cy          图片高度（EMU）
+     * @param rotation    旋转角度（1/60000 度）
+     * @param washout     是否冲蚀（降低亮度和对比度）
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    private CTAnchor createPictureAnchor(XWPFHeader header, long id, byte[] pictureData, int pictureType,
+                                         int cx, int cy, int rotation, boolean washout) {
+        XWPFParagraph paragraph = WordUtils.getFirstParagraph(header);
         XWPFRun run = paragraph.createRun();
         CTR ctr = run.getCTR();
 
         try {
             // Work out what to add the picture to, then add both the
             //  picture and the relationship for it
-            XWPFHeader header = (XWPFHeader) paragraph.getPart();
-            String relationId = header.addPictureData(imageStream, pictureType);
+            String relationId = header.addPictureData(pictureData, pictureType);
 
             // Create the drawing entry for it
             CTDrawing drawing = ctr.addNewDrawing();
             CTAnchor anchor = drawing.addNewAnchor();
-            addNewGraphic(anchor);
+            org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture pic = addNewGraphic(anchor);
 
             // Setup the anchor
             anchor.setDistT(0);
             anchor.setDistR(0);
             anchor.setDistB(0);
             anchor.setDistL(0);
+            anchor.setSimplePos2(false);
+            anchor.setRelativeHeight(0);
             anchor.setAllowOverlap(true);
             anchor.setBehindDoc(true);
             anchor.setLayoutInCell(true);
             anchor.setLocked(false);
 
-            CTPosH posH = anchor.addNewPositionH();
-            posH.setRelativeFrom(STRelFromH.MARGIN);
-            posH.setAlign(STAlignH.CENTER);
-            CTPosV posV = anchor.addNewPositionV();
-            posV.setRelativeFrom(STRelFromV.MARGIN);
-            posV.setAlign(STAlignV.CENTER);
+            CTPoint2D simplePos = anchor.addNewSimplePos();
+            simplePos.setX(0);
+            simplePos.setY(0);
+            anchor.addNewWrapNone();
 
             CTNonVisualDrawingProps docPr = anchor.addNewDocPr();
-            long id = paragraph.getDocument().getNextPicNameNumber(pictureType);
             docPr.setId(id);
             /* This name is not visible in Word 2010 anywhere. */
             docPr.setName("Drawing " + id);
@@ -310,11 +544,6 @@ public class WordWatermarkCreator implements WatermarkCreator {
             extent.setCx(cx);
             extent.setCy(cy);
 
-            // Grab the picture object
-            CTGraphicalObject graphic = anchor.getGraphic();
-            CTGraphicalObjectData graphicData = graphic.getGraphicData();
-            org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture pic = getCTPictures(graphicData).get(0);
-
             // Set it up
             org.openxmlformats.schemas.drawingml.x2006.picture.CTPictureNonVisual nvPicPr = pic.addNewNvPicPr();
 
@@ -332,16 +561,18 @@ public class WordWatermarkCreator implements WatermarkCreator {
             blipFill.addNewStretch().addNewFillRect();
             CTBlip blip = blipFill.addNewBlip();
             blip.setEmbed(relationId);
-            CTLuminanceEffect luminanceEffect = blip.addNewLum();
-            // 亮度
-            luminanceEffect.setBright(BRIGHT);
-            // 对比度
-            luminanceEffect.setContrast(CONTRAST);
+            if (washout) {
+                CTLuminanceEffect luminanceEffect = blip.addNewLum();
+                // 亮度
+                luminanceEffect.setBright(BRIGHT);
+                // 对比度
+                luminanceEffect.setContrast(CONTRAST);
+            }
 
             CTShapeProperties spPr = pic.addNewSpPr();
             CTTransform2D xfrm = spPr.addNewXfrm();
             // 旋转
-            xfrm.setRot(imageWatermark.getStyle().getFormat().getRotation() * ROT_RATIO);
+            xfrm.setRot(rotation);
 
             CTPoint2D off = xfrm.addNewOff();
             off.setX(0);
@@ -354,60 +585,34 @@ public class WordWatermarkCreator implements WatermarkCreator {
             CTPresetGeometry2D presetGeometry2D = spPr.addNewPrstGeom();
             presetGeometry2D.setPrst(STShapeType.RECT);
             presetGeometry2D.addNewAvLst();
+            return anchor;
         } catch (InvalidFormatException e) {
             throw new WatermarkException("水印图片类型错误：" + e.getMessage(), e);
         }
     }
 
     /**
-     * 给 <wp:anchor></wp:anchor> 节点下添加 <a:graphic></a:graphic> 节点
+     * 给 <wp:anchor></wp:anchor> 节点下添加 <a:graphic></a:graphic> 节点，直接创建节点对象，不拼接和解析 XML 字符串
      *
      * @param anchor <wp:anchor></wp:anchor> 节点
+     * @return <pic:pic></pic:pic> 节点
      * @author lihaitao
      * @since 2020/7/5
      */
-    private void addNewGraphic(CTAnchor anchor) throws IOException {
-        // Do the fiddly namespace bits on the inline
-        // (We need full control of what goes where and as what)
-        String xml =
-                "<a:graphic xmlns:a=\"" + CTGraphicalObject.type.getName().getNamespaceURI() + "\">" +
-                        "<a:graphicData uri=\"" + org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI() + "\">" +
-                        "<pic:pic xmlns:pic=\"" + org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI() + "\" />" +
-                        "</a:graphicData>" +
-                        "</a:graphic>";
-        InputSource is = new InputSource(new StringReader(xml));
+    private org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture addNewGraphic(CTAnchor anchor) {
+        CTGraphicalObjectData graphicData = anchor.addNewGraphic().addNewGraphicData();
+        graphicData.setUri(PICTURE_NAMESPACE);
+        // <a:graphicData> 的内容为任意元素，用游标插入 <pic:pic>，XmlBeans 按全局元素声明创建对应的节点对象
+        XmlCursor cursor = graphicData.newCursor();
         try {
-            org.w3c.dom.Document document = DocumentHelper.readDocument(is);
-            anchor.set(XmlToken.Factory.parse(document.getDocumentElement(), POIXMLTypeLoader.DEFAULT_XML_OPTIONS));
-        } catch (SAXException | XmlException e) {
-            throw new WatermarkException("给Word文件添加图片水印时发生错误：" + e.getMessage(), e);
-        }
-    }
-
-    /**
-     * 获取 <pic:pic></pic:pic> 节点
-     *
-     * @author lihaitao
-     * @since 2020-07-05
-     */
-    private List<org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture> getCTPictures(XmlObject o) {
-        List<org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture> pics = new ArrayList<>();
-        String path = "declare namespace pic='" + org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type.getName().getNamespaceURI() + "' .//pic:pic";
-        XmlObject[] picts = o.selectPath(path);
-        for (XmlObject pict : picts) {
-            if (pict instanceof XmlAnyTypeImpl) {
-                // Pesky XmlBeans bug - see Bugzilla #49934
-                try {
-                    pict = org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.Factory.parse(pict.toString(), POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
-                } catch (XmlException e) {
-                    throw new POIXMLException(e);
-                }
-            }
-            if (pict instanceof org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture) {
-                pics.add((org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture) pict);
-            }
+            cursor.toEndToken();
+            cursor.beginElement(PICTURE_ELEMENT);
+            cursor.toParent();
+            XmlObject pic = cursor.getObject();
+            return (org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture) (pic instanceof org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture ? pic : pic.changeType(org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture.type));
+        } finally {
+            cursor.dispose();
         }
-        return pics;
     }
 
     /**
@@ -445,6 +650,22 @@ public class WordWatermarkCreator implements WatermarkCreator {
         }
     }
 
+    public RepeatMode getRepeatMode() {
+        return repeatMode;
+    }
+
+    public void setRepeatMode(RepeatMode repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
+    public boolean isRawCopy() {
+        return rawCopy;
+    }
+
+    public void setRawCopy(boolean rawCopy) {
+        this.rawCopy = rawCopy;
+    }
+
     /**
      * 实现自动关闭流的方法
      *
@@ -453,9 +674,18 @@ public class WordWatermarkCreator implements WatermarkCreator {
      */
     @Override
     public void close() throws IOException {
-        if (doc != null) {
+        if (doc != null && zipFile != null) {
+            // 放弃对文件的修改
+            doc.getPackage().revert();
+        } else if (doc != null) {
             doc.close();
         }
+        if (zipFile != null) {
+            zipFile.close();
+        }
+        if (tempFile != null) {
+            Files.deleteIfExists(tempFile);
+        }
         if (inputStream != null) {
             inputStream.close();
         }
@@ -465,4 +695,23 @@ public class WordWatermarkCreator implements WatermarkCreator {
         // outputStream 不需要关闭，因添加水印后要返回给调用者
     }
 
+    /**
+     * 重复水印的添加方式
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public enum RepeatMode {
+
+        /**
+         * 每个水印是一个形状（文字水印为艺术字），水印可以在 Word 中单独编辑，水印数量多时文档较大、打开较慢
+         */
+        SHAPES,
+
+        /**
+         * 所有水印绘制为一张图片，每个页眉只有一个图片，各页眉共用同一个图片部件
+         */
+        HEADER_IMAGE
+    }
+
 }
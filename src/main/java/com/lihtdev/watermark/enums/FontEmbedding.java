@@ -0,0 +1,26 @@
+package com.lihtdev.watermark.enums;
+
+/**
+ * PDF 字体嵌入方式
+ *
+ * @author lihaitao
+ * @since 2020/7/12
+ */
+public enum FontEmbedding {
+
+    /**
+     * 嵌入完整字体（中文字体通常有数 MB 至数十 MB）
+     */
+    FULL,
+
+    /**
+     * 只嵌入水印用到的字形（默认），每个文档在关闭时计算一次子集
+     */
+    SUBSET,
+
+    /**
+     * 不嵌入字体，引用阅读器内置的标准中文字体 STSong-Light（需要 font-asian），输出文件最小
+     */
+    REFERENCE
+
+}
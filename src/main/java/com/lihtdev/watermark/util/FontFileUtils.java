@@ -0,0 +1,274 @@
+package com.lihtdev.watermark.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 字体文件工具类（只读取 TTF/TTC/OTF 文件头部的 name 表，不加载字形数据；格式错误的文件抛出 IOException）
+ *
+ * @author lihaitao
+ * @since 2020/7/12
+ */
+public class FontFileUtils {
+
+    /**
+     * TTC 字体集合文件的标签
+     */
+    private static final int TTC_TAG = 0x74746366;
+
+    /**
+     * name 表的标签
+     */
+    private static final int NAME_TABLE_TAG = 0x6E616D65;
+
+    /**
+     * 字体族名称
+     */
+    private static final int NAME_ID_FAMILY = 1;
+
+    /**
+     * 字体全名
+     */
+    private static final int NAME_ID_FULL_NAME = 4;
+
+    /**
+     * 排版用的字体族名称
+     */
+    private static final int NAME_ID_TYPOGRAPHIC_FAMILY = 16;
+
+    /**
+     * Unicode 平台
+     */
+    private static final int PLATFORM_UNICODE = 0;
+
+    /**
+     * Macintosh 平台
+     */
+    private static final int PLATFORM_MACINTOSH = 1;
+
+    /**
+     * Windows 平台
+     */
+    private static final int PLATFORM_WINDOWS = 3;
+
+    /**
+     * 判断是否为支持的字体文件（.ttf, .ttc, .otf）
+     *
+     * @param path 文件路径
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static boolean isFontFile(Path path) {
+        String fileName = path.getFileName().toString().toLowerCase();
+        return fileName.endsWith(".ttf") || fileName.endsWith(".ttc") || fileName.endsWith(".otf");
+    }
+
+    /**
+     * 读取字体文件中每个字体的名称（字体族名称和全名，包含各语言的名称），TTC 文件按字体索引依次返回
+     *
+     * @param path 字体文件路径
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static List<Set<String>> getFontNames(Path path) throws IOException {
+        return getFontNames(path, false);
+    }
+
+    /**
+     * 读取字体文件中每个字体的全名（包含各语言的名称），TTC 文件按字体索引依次返回
+     * <p>
+     * 同一字体族的各个字体（常规、粗体等）共用字体族名称，全名可以唯一确定一个字体
+     *
+     * @param path 字体文件路径
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static List<Set<String>> getFullNames(Path path) throws IOException {
+        return getFontNames(path, true);
+    }
+
+    /*
+     * 读取字体文件中每个字体的名称
+     */
+    private static List<Set<String>> getFontNames(Path path, boolean fullNameOnly) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<Set<String>> fontNames = new ArrayList<>();
+            for (long fontOffset : getFontOffsets(channel)) {
+                fontNames.add(getFontNames(channel, fontOffset, fullNameOnly));
+            }
+            return fontNames;
+        }
+    }
+
+    /**
+     * 读取 TTC 文件中的一个字体，生成只包含该字体的 TTF 文件（Java 的 Font.createFont 只能加载 TTC 文件中的第一个字体）
+     * <p>
+     * 字体的各个表按原样复制，只修改表的偏移量
+     *
+     * @param path     TTC 文件路径
+     * @param ttcIndex 字体在 TTC 文件中的索引
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static byte[] readTtcFont(Path path, int ttcIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] fontOffsets = getFontOffsets(channel);
+            if (ttcIndex < 0 || ttcIndex >= fontOffsets.length) {
+                throw new IOException("字体索引超出范围：" + ttcIndex);
+            }
+            long fontOffset = fontOffsets[ttcIndex];
+            int numTables = getNumTables(channel, fontOffset);
+            ByteBuffer header = read(channel, fontOffset, 12 + numTables * 16);
+            long[] tableOffsets = new long[numTables];
+            int[] tableLengths = new int[numTables];
+            long fontLength = header.limit();
+            for (int i = 0; i < numTables; i++) {
+                tableOffsets[i] = header.getInt(12 + i * 16 + 8) & 0xFFFFFFFFL;
+                tableLengths[i] = header.getInt(12 + i * 16 + 12);
+                if (tableLengths[i] < 0 || tableOffsets[i] + tableLengths[i] > channel.size()) {
+                    throw new IOException("字体文件格式错误");
+                }
+                // 每个表按 4 字节对齐
+                fontLength += (tableLengths[i] + 3) & ~3;
+            }
+            if (fontLength > channel.size()) {
+                throw new IOException("字体文件格式错误");
+            }
+            ByteBuffer font = ByteBuffer.allocate((int) fontLength);
+            font.put(header);
+            for (int i = 0; i < numTables; i++) {
+                font.putInt(12 + i * 16 + 8, font.position());
+                font.put(read(channel, tableOffsets[i], tableLengths[i]));
+                font.position((font.position() + 3) & ~3);
+            }
+            return font.array();
+        }
+    }
+
+    /*
+     * 获取文件中每个字体的偏移量（TTF、OTF 文件只有一个字体，偏移量为 0），字体数量不能超过文件的容量
+     */
+    private static long[] getFontOffsets(FileChannel channel) throws IOException {
+        if (readInt(channel, 0) != TTC_TAG) {
+            return new long[]{0};
+        }
+        int numFonts = readInt(channel, 8);
+        if (numFonts <= 0 || numFonts > (channel.size() - 12) / 4) {
+            throw new IOException("字体文件格式错误：字体数量为 " + numFonts);
+        }
+        ByteBuffer offsets = read(channel, 12, numFonts * 4);
+        long[] fontOffsets = new long[numFonts];
+        for (int i = 0; i < numFonts; i++) {
+            fontOffsets[i] = offsets.getInt() & 0xFFFFFFFFL;
+        }
+        return fontOffsets;
+    }
+
+    /*
+     * 读取字体的表数量，表记录不能超出文件
+     */
+    private static int getNumTables(FileChannel channel, long fontOffset) throws IOException {
+        int numTables = read(channel, fontOffset + 4, 2).getShort() & 0xFFFF;
+        if (fontOffset + 12 + numTables * 16L > channel.size()) {
+            throw new IOException("字体文件格式错误：表数量为 " + numTables);
+        }
+        return numTables;
+    }
+
+    /*
+     * 读取偏移量处的字体的名称
+     */
+    private static Set<String> getFontNames(FileChannel channel, long fontOffset, boolean fullNameOnly) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        int numTables = getNumTables(channel, fontOffset);
+        ByteBuffer tableRecords = read(channel, fontOffset + 12, numTables * 16);
+        for (int i = 0; i < numTables; i++) {
+            int tag = tableRecords.getInt();
+            tableRecords.getInt();
+            long offset = tableRecords.getInt() & 0xFFFFFFFFL;
+            int length = tableRecords.getInt();
+            if (tag == NAME_TABLE_TAG) {
+                readNames(read(channel, offset, length), names, fullNameOnly);
+                break;
+            }
+        }
+        return names;
+    }
+
+    /*
+     * 解析 name 表
+     */
+    private static void readNames(ByteBuffer nameTable, Set<String> names, boolean fullNameOnly) {
+        nameTable.getShort();
+        int count = nameTable.getShort() & 0xFFFF;
+        int stringOffset = nameTable.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int platformId = nameTable.getShort() & 0xFFFF;
+            int encodingId = nameTable.getShort() & 0xFFFF;
+            nameTable.getShort();
+            int nameId = nameTable.getShort() & 0xFFFF;
+            int length = nameTable.getShort() & 0xFFFF;
+            int offset = nameTable.getShort() & 0xFFFF;
+            if (nameId != NAME_ID_FULL_NAME && (fullNameOnly || nameId != NAME_ID_FAMILY && nameId != NAME_ID_TYPOGRAPHIC_FAMILY)) {
+                continue;
+            }
+            Charset charset = getCharset(platformId, encodingId);
+            if (charset == null || stringOffset + offset + length > nameTable.limit()) {
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            ByteBuffer string = nameTable.duplicate();
+            string.position(stringOffset + offset);
+            string.get(bytes);
+            String name = new String(bytes, charset).trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+    }
+
+    /*
+     * 获取名称的字符集，不支持的编码返回 null
+     */
+    private static Charset getCharset(int platformId, int encodingId) {
+        if (platformId == PLATFORM_UNICODE || platformId == PLATFORM_WINDOWS) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (platformId == PLATFORM_MACINTOSH && encodingId == 0) {
+            // Mac Roman 编码，英文名称与 ISO-8859-1 一致
+            return StandardCharsets.ISO_8859_1;
+        }
+        return null;
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        return read(channel, position, 4).getInt();
+    }
+
+    /*
+     * 读取文件中的一段数据，长度不能超出文件（避免格式错误的文件导致分配过大的内存）
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (length < 0 || position < 0 || position + length > channel.size()) {
+            throw new IOException("字体文件格式错误");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("字体文件不完整");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+}
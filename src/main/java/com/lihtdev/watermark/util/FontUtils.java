@@ -1,7 +1,10 @@
 package com.lihtdev.watermark.util;
 
 import com.lihtdev.watermark.enums.ChineseFont;
+import com.lihtdev.watermark.enums.FontEmbedding;
 import com.lihtdev.watermark.exception.WatermarkException;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
 import com.itextpdf.io.font.PdfEncodings;
 import com.itextpdf.io.util.ResourceUtil;
 import com.itextpdf.io.util.StreamUtil;
@@ -12,9 +15,15 @@ import java.awt.*;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * 字体工具类
@@ -30,12 +39,108 @@ public class FontUtils {
     private static final String BASE_FONT_PATH = "font-chinese/";
 
     /**
-     * Java 字体对象缓存
+     * 外部字体文件索引（字体名称 -> 字体文件），只记录字体文件的位置，首次使用时才加载
+     */
+    private static final Map<String, FontFile> externalFontMap = new ConcurrentHashMap<>();
+
+    /**
+     * Java 字体对象缓存（首次使用时加载）
      */
     private static final Map<String, Font> fontMap = new ConcurrentHashMap<>();
 
     /**
-     * 获取Java字体对象
+     * TTC 字体文件中使用的字体索引
+     */
+    private static final int TTC_INDEX = 0;
+
+    /**
+     * 不嵌入字体时引用的标准中文字体
+     */
+    private static final String REFERENCE_FONT_NAME = "STSong-Light";
+
+    /**
+     * 标准中文字体的编码
+     */
+    private static final String REFERENCE_FONT_ENCODING = "UniGB-UCS2-H";
+
+    /**
+     * PDF 字体程序缓存的最大数量
+     */
+    private static volatile int fontProgramCacheSize = 8;
+
+    /**
+     * PDF 字体程序缓存（按字体名称和 TTC 索引缓存，最近最少使用的先淘汰，访问时需对其加锁）
+     * <p>
+     * 字体程序只包含解析后的字体数据，与 PDF 文档无关，可在多个文档间共享；PdfFont 与文档绑定，每个文档单独创建
+     */
+    private static final Map<String, FontProgram> fontProgramCache = new LinkedHashMap<String, FontProgram>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FontProgram> eldest) {
+            return size() > fontProgramCacheSize;
+        }
+    };
+
+    /**
+     * PDF 字体程序缓存命中次数
+     */
+    private static final AtomicLong fontProgramCacheHits = new AtomicLong();
+
+    /**
+     * PDF 字体程序缓存未命中次数
+     */
+    private static final AtomicLong fontProgramCacheMisses = new AtomicLong();
+
+    /**
+     * 注册外部字体目录（递归扫描目录下的 .ttf, .ttc, .otf 文件，只读取字体名称建立索引，字体在首次使用时才加载）
+     * <p>
+     * 外部字体优先于内置的中文字体，无法解析的字体文件不会注册，与失败原因一起返回
+     *
+     * @param directory 字体目录
+     * @return 无法解析的字体文件及失败原因，全部注册成功时为空
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static Map<Path, Exception> registerFontDirectory(Path directory) {
+        Map<Path, Exception> failures = new LinkedHashMap<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.filter(path -> Files.isRegularFile(path) && FontFileUtils.isFontFile(path)).forEach(path -> {
+                try {
+                    registerFontFile(path);
+                } catch (IOException | RuntimeException e) {
+                    failures.put(path, e);
+                }
+            });
+        } catch (IOException e) {
+            throw new WatermarkException("扫描字体目录失败：" + directory, e);
+        }
+        return failures;
+    }
+
+    /*
+     * 注册外部字体文件（全名唯一确定一个字体；字体族名称由多个字体共用，只在未注册时指向当前字体）
+     */
+    private static void registerFontFile(Path path) throws IOException {
+        List<Set<String>> fontNames = FontFileUtils.getFontNames(path);
+        List<Set<String>> fullNames = FontFileUtils.getFullNames(path);
+        for (int ttcIndex = 0; ttcIndex < fontNames.size(); ttcIndex++) {
+            FontFile fontFile = new FontFile(path, ttcIndex);
+            for (String fontName : fontNames.get(ttcIndex)) {
+                boolean registered = fullNames.get(ttcIndex).contains(fontName)
+                        ? externalFontMap.put(fontName, fontFile) != fontFile
+                        : externalFontMap.putIfAbsent(fontName, fontFile) == null;
+                if (registered) {
+                    // 已加载的同名字体失效
+                    fontMap.remove(fontName);
+                    synchronized (fontProgramCache) {
+                        fontProgramCache.keySet().removeIf(cacheKey -> cacheKey.startsWith(fontName + "#"));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取Java字体对象（外部字体和内置的中文字体在首次使用时加载）
      *
      * @param fontName  字体名
      * @param fontStyle 字体样式
@@ -44,7 +149,7 @@ public class FontUtils {
      * @since 2020/7/12
      */
     public static Font getFont(String fontName, int fontStyle, int fontSize) {
-        Font font = fontMap.get(fontName);
+        Font font = getFont(fontName);
         if (font == null) {
             return new Font(fontName, fontStyle, fontSize);
         }
@@ -52,56 +157,239 @@ public class FontUtils {
     }
 
     /**
-     * 获取PDF字体对象
+     * 获取外部字体或内置中文字体的Java字体对象，首次使用时加载（每种字体只加载一次，加载失败时下次使用会重新加载）
+     *
+     * @param fontName 字体名
+     * @return Java字体对象，非外部字体和内置中文字体时返回 null
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    private static Font getFont(String fontName) {
+        FontFile fontFile = externalFontMap.get(fontName);
+        if (fontFile != null) {
+            return fontMap.computeIfAbsent(fontName, name -> getFontFromFile(fontFile));
+        }
+        ChineseFont chineseFont = ChineseFont.values()[0].getChineseFontByFontName(fontName);
+        if (chineseFont != null) {
+            return fontMap.computeIfAbsent(fontName, name -> getFontFromResource(chineseFont));
+        }
+        return null;
+    }
+
+    /*
+     * 从外部字体文件加载字体（直接读取文件，无需复制到堆内存；Java 只能加载 TTC 文件中的第一个字体，其它字体先提取为单独的 TTF 数据再加载）
+     */
+    private static Font getFontFromFile(FontFile fontFile) {
+        try {
+            if (fontFile.getTtcIndex() > 0) {
+                byte[] fontBytes = FontFileUtils.readTtcFont(fontFile.getPath(), fontFile.getTtcIndex());
+                return Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(fontBytes));
+            }
+            return Font.createFont(Font.TRUETYPE_FONT, fontFile.getPath().toFile());
+        } catch (IOException | FontFormatException e) {
+            throw new WatermarkException("加载字体失败：" + fontFile.getPath(), e);
+        }
+    }
+
+    /*
+     * 从 resource 加载中文字体文件
+     */
+    private static Font getFontFromResource(ChineseFont chineseFont) {
+        try (InputStream resourceStream = ResourceUtil.getResourceStream(BASE_FONT_PATH + chineseFont.getFileName())) {
+            return Font.createFont(Font.TRUETYPE_FONT, resourceStream);
+        } catch (IOException | FontFormatException e) {
+            throw new WatermarkException("加载中文字体失败：" + chineseFont.getFontName(), e);
+        }
+    }
+
+    /**
+     * 预加载中文字体（对延迟敏感的场景可在启动时调用，避免首次添加水印时加载字体）
+     *
+     * @param chineseFonts 中文字体，不传时加载全部中文字体
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static void preload(ChineseFont... chineseFonts) {
+        if (chineseFonts.length == 0) {
+            chineseFonts = ChineseFont.values();
+        }
+        for (ChineseFont chineseFont : chineseFonts) {
+            getFont(chineseFont.getFontName());
+            getFontProgram(chineseFont.getFontName());
+        }
+    }
+
+    /**
+     * 获取PDF字体对象（字体程序从缓存中获取，只创建与文档绑定的 PdfFont，嵌入用到的字形）
      *
      * @param fontName 字体名称
      * @author lihaitao
      * @since 2020/7/12
      */
     public static PdfFont getPdfFont(String fontName) {
-        PdfFont pdfFont = getPdfFontFromResource(fontName);
-        if (pdfFont == null) {
+        return getPdfFont(fontName, FontEmbedding.SUBSET);
+    }
+
+    /**
+     * 获取PDF字体对象（字体程序从缓存中获取，只创建与文档绑定的 PdfFont）
+     *
+     * @param fontName      字体名称
+     * @param fontEmbedding 字体嵌入方式，不嵌入时忽略字体名称，使用标准中文字体 STSong-Light
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    public static PdfFont getPdfFont(String fontName, FontEmbedding fontEmbedding) {
+        if (fontEmbedding == FontEmbedding.REFERENCE) {
+            try {
+                return PdfFontFactory.createFont(REFERENCE_FONT_NAME, REFERENCE_FONT_ENCODING, false);
+            } catch (IOException e) {
+                throw new WatermarkException("获取标准中文字体失败", e);
+            }
+        }
+        PdfFont pdfFont = getEmbeddedPdfFont(fontName);
+        pdfFont.setSubset(fontEmbedding == FontEmbedding.SUBSET);
+        return pdfFont;
+    }
+
+    /*
+     * 获取嵌入的PDF字体对象
+     */
+    private static PdfFont getEmbeddedPdfFont(String fontName) {
+        FontProgram fontProgram = getFontProgram(fontName);
+        if (fontProgram == null) {
             try {
                 return PdfFontFactory.createFont(fontName, PdfEncodings.IDENTITY_H, true);
             } catch (IOException e) {
                 throw new WatermarkException("获取中文字体失败", e);
             }
         }
-        return pdfFont;
+        return PdfFontFactory.createFont(fontProgram, PdfEncodings.IDENTITY_H, true);
+    }
+
+    /**
+     * 获取外部字体或内置中文字体的字体程序，优先从缓存中获取
+     *
+     * @param fontName 字体名称
+     * @return 字体程序，非外部字体和内置中文字体时返回 null
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    private static FontProgram getFontProgram(String fontName) {
+        FontFile fontFile = externalFontMap.get(fontName);
+        ChineseFont chineseFont = ChineseFont.values()[0].getChineseFontByFontName(fontName);
+        if (fontFile == null && chineseFont == null) {
+            return null;
+        }
+        String cacheKey = fontName + "#" + (fontFile != null ? fontFile.getTtcIndex() : TTC_INDEX);
+        synchronized (fontProgramCache) {
+            FontProgram fontProgram = fontProgramCache.get(cacheKey);
+            if (fontProgram != null) {
+                fontProgramCacheHits.incrementAndGet();
+                return fontProgram;
+            }
+        }
+        fontProgramCacheMisses.incrementAndGet();
+        // 加载字体时不加锁，避免阻塞获取其他字体的线程
+        FontProgram fontProgram = fontFile != null ? getFontProgramFromFile(fontFile) : getFontProgramFromResource(chineseFont);
+        synchronized (fontProgramCache) {
+            FontProgram cachedFontProgram = fontProgramCache.putIfAbsent(cacheKey, fontProgram);
+            return cachedFontProgram != null ? cachedFontProgram : fontProgram;
+        }
+    }
+
+    /*
+     * 从外部字体文件加载字体程序（通过内存映射读取字体文件，字形数据不复制到堆内存）
+     */
+    private static FontProgram getFontProgramFromFile(FontFile fontFile) {
+        String path = fontFile.getPath().toString();
+        try {
+            if (path.toLowerCase().endsWith(".ttc")) {
+                return FontProgramFactory.createFont(path, fontFile.getTtcIndex(), false);
+            } else {
+                return FontProgramFactory.createFont(path, false);
+            }
+        } catch (IOException e) {
+            throw new WatermarkException("加载字体失败：" + path, e);
+        }
     }
 
     /*
      * 从 resource 加载中文字体文件
      */
-    private static PdfFont getPdfFontFromResource(String fontName) {
-        ChineseFont chineseFont = ChineseFont.values()[0].getChineseFontByFontName(fontName);
+    private static FontProgram getFontProgramFromResource(ChineseFont chineseFont) {
         try (InputStream resourceStream = ResourceUtil.getResourceStream(BASE_FONT_PATH + chineseFont.getFileName())) {
             byte[] fontBytes = StreamUtil.inputStreamToArray(resourceStream);
+            // 由 fontProgramCache 缓存，不再使用 iText 的全局缓存
             if (chineseFont.isTtc()) {
-                return PdfFontFactory.createTtcFont(fontBytes, 0, PdfEncodings.IDENTITY_H, true, true);
+                return FontProgramFactory.createFont(fontBytes, TTC_INDEX, false);
             } else {
-                return PdfFontFactory.createFont(fontBytes, PdfEncodings.IDENTITY_H, true);
+                return FontProgramFactory.createFont(fontBytes, false);
             }
         } catch (IOException e) {
             throw new WatermarkException("加载中文字体失败", e);
         }
     }
 
-    /*
-     * 从 resource 加载中文字体文件
+    /**
+     * 设置 PDF 字体程序缓存的最大数量（超出时淘汰最近最少使用的字体程序）
+     *
+     * @param cacheSize 缓存的最大数量
+     * @author lihaitao
+     * @since 2020/7/12
      */
-    static {
-        ChineseFont[] chineseFonts = ChineseFont.values();
-        Arrays.stream(chineseFonts).forEach(chineseFont -> {
-            try (InputStream resourceStream = ResourceUtil.getResourceStream(BASE_FONT_PATH + chineseFont.getFileName())) {
-                byte[] fontBytes = StreamUtil.inputStreamToArray(resourceStream);
-                ByteArrayInputStream fontByteArrayInputStream = new ByteArrayInputStream(fontBytes);
-                Font font = Font.createFont(Font.TRUETYPE_FONT, fontByteArrayInputStream);
-                fontMap.put(chineseFont.getFontName(), font);
-            } catch (IOException | FontFormatException e) {
-                throw new WatermarkException("加载中文字体失败", e);
+    public static void setFontProgramCacheSize(int cacheSize) {
+        synchronized (fontProgramCache) {
+            fontProgramCacheSize = cacheSize;
+            while (fontProgramCache.size() > cacheSize) {
+                fontProgramCache.remove(fontProgramCache.keySet().iterator().next());
             }
-        });
+        }
+    }
+
+    /**
+     * 获取 PDF 字体程序缓存命中次数
+     */
+    public static long getFontProgramCacheHits() {
+        return fontProgramCacheHits.get();
+    }
+
+    /**
+     * 获取 PDF 字体程序缓存未命中次数
+     */
+    public static long getFontProgramCacheMisses() {
+        return fontProgramCacheMisses.get();
+    }
+
+    /**
+     * 外部字体文件
+     *
+     * @author lihaitao
+     * @since 2020/7/12
+     */
+    private static class FontFile {
+
+        /**
+         * 字体文件路径
+         */
+        private final Path path;
+
+        /**
+         * 字体在 TTC 文件中的索引（非 TTC 文件为 0）
+         */
+        private final int ttcIndex;
+
+        FontFile(Path path, int ttcIndex) {
+            this.path = path;
+            this.ttcIndex = ttcIndex;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        int getTtcIndex() {
+            return ttcIndex;
+        }
     }
 
 }
@@ -2,9 +2,11 @@ package com.lihtdev.watermark.util;
 
 import cn.hutool.core.img.ImgUtil;
 import com.lihtdev.watermark.model.ImageWatermark;
+import com.lihtdev.watermark.model.RepeatWatermarkStyle;
 import com.lihtdev.watermark.model.TextWatermark;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 
 /**
@@ -46,4 +48,56 @@ public class ImageUtils {
         return bufferedImage;
     }
 
+    /**
+     * 将透明度绘制到图片中（用于不支持设置图片透明度的文件格式）
+     *
+     * @param image   图片
+     * @param opacity 透明度
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static BufferedImage setOpacity(Image image, float opacity) {
+        BufferedImage transparentImage = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = transparentImage.createGraphics();
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return transparentImage;
+    }
+
+    /**
+     * 将重复水印绘制为一张图片（每个水印按样式的格式绕自身中心旋转）
+     *
+     * @param watermarkImage       水印图片
+     * @param watermarkWidth       水印宽度
+     * @param watermarkHeight      水印高度
+     * @param repeatWatermarkStyle 重复水印样式
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static BufferedImage createRepeatImage(Image watermarkImage, int watermarkWidth, int watermarkHeight,
+                                                  RepeatWatermarkStyle repeatWatermarkStyle) {
+        int cellWidth = watermarkWidth + repeatWatermarkStyle.getXSpace();
+        int cellHeight = watermarkHeight + repeatWatermarkStyle.getYSpace();
+        int width = repeatWatermarkStyle.getXStart() + cellWidth * repeatWatermarkStyle.getCols();
+        int height = repeatWatermarkStyle.getYStart() + cellHeight * repeatWatermarkStyle.getRows();
+        double rotation = Math.toRadians(repeatWatermarkStyle.getFormat().getRotation());
+
+        BufferedImage repeatImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = repeatImage.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (int row = 0; row < repeatWatermarkStyle.getRows(); row++) {
+            for (int col = 0; col < repeatWatermarkStyle.getCols(); col++) {
+                int x = repeatWatermarkStyle.getXStart() + cellWidth * col;
+                int y = repeatWatermarkStyle.getYStart() + cellHeight * row;
+                AffineTransform transform = graphics.getTransform();
+                graphics.rotate(rotation, x + watermarkWidth / 2.0, y + watermarkHeight / 2.0);
+                graphics.drawImage(watermarkImage, x, y, watermarkWidth, watermarkHeight, null);
+                graphics.setTransform(transform);
+            }
+        }
+        graphics.dispose();
+        return repeatImage;
+    }
+
 }
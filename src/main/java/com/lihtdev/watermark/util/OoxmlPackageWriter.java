@@ -0,0 +1,283 @@
+package com.lihtdev.watermark.util;
+
+import com.lihtdev.watermark.exception.WatermarkException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.TargetMode;
+import org.apache.poi.util.IOUtils;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * OOXML 包写入器：未修改的 zip 条目按压缩数据原样复制（不解压也不重新压缩），只重新编码水印修改或新增的部件
+ * <p>
+ * 部件名称与 zip 条目名称一致，不以 / 开头；修改的部件写在原条目的位置，新增的部件写在最后
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class OoxmlPackageWriter {
+
+    /**
+     * 原文件
+     */
+    private final ZipFile zipFile;
+
+    /**
+     * 修改或新增的部件
+     */
+    private final Map<String, PartWriter> parts = new LinkedHashMap<>();
+
+    /**
+     * 所有部件名称（小写），用于生成新部件名称
+     */
+    private final Set<String> partNames = new HashSet<>();
+
+    /**
+     * 创建 OOXML 包写入器
+     *
+     * @param zipFile 原文件
+     */
+    public OoxmlPackageWriter(ZipFile zipFile) {
+        this.zipFile = zipFile;
+        for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+            partNames.add(entry.getName().toLowerCase());
+        }
+    }
+
+    /**
+     * 判断原文件中是否存在部件
+     *
+     * @param partName 部件名称
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public boolean hasPart(String partName) {
+        return zipFile.getEntry(partName) != null;
+    }
+
+    /**
+     * 读取原文件中的部件（解压后的内容）
+     *
+     * @param partName 部件名称
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public InputStream getPartInputStream(String partName) throws IOException {
+        ZipArchiveEntry entry = zipFile.getEntry(partName);
+        if (entry == null) {
+            throw new WatermarkException("文件缺少部件：" + partName);
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * 读取原文件中的 XML 部件
+     *
+     * @param partName 部件名称
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public Document readXmlPart(String partName) throws IOException {
+        try (InputStream partStream = getPartInputStream(partName)) {
+            return OoxmlUtils.readXml(partStream);
+        }
+    }
+
+    /**
+     * 读取原文件中的关系部件，不存在时创建空的关系部件
+     *
+     * @param partName 源部件名称（不是关系部件名称）
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public Document readRelationships(String partName) throws IOException {
+        String relationshipsPartName = OoxmlUtils.getRelationshipsPartName(partName);
+        return hasPart(relationshipsPartName) ? readXmlPart(relationshipsPartName) : OoxmlUtils.createRelationships();
+    }
+
+    /**
+     * 获取未被使用的部件名称，返回的名称视为已使用
+     *
+     * @param defaultFileName 部件名称模板，# 替换为序号，如：/xl/media/image#.png
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public String getNewPartName(String defaultFileName) {
+        return OoxmlUtils.getNewPartName(partNames, defaultFileName);
+    }
+
+    /**
+     * 修改或新增部件
+     *
+     * @param partName 部件名称
+     * @param content  部件内容
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void putPart(String partName, byte[] content) {
+        putPart(partName, outputStream -> outputStream.write(content));
+    }
+
+    /**
+     * 修改或新增 XML 部件
+     *
+     * @param partName 部件名称
+     * @param document 部件内容
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void putPart(String partName, Document document) {
+        putPart(partName, OoxmlUtils.toBytes(document));
+    }
+
+    /**
+     * 修改或新增部件，部件内容在写入时才生成（如边读取原部件边改写，不需要将整个部件读入内存）
+     *
+     * @param partName   部件名称
+     * @param partWriter 部件内容的写入方法
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void putPart(String partName, PartWriter partWriter) {
+        partNames.add(partName.toLowerCase());
+        parts.put(partName, partWriter);
+    }
+
+    /**
+     * 将 POI 部件的 XML 对象作为部件内容（与 POI 提交部件时的序列化方式一致）
+     *
+     * @param part            POI 部件
+     * @param xmlObject       部件的 XML 对象
+     * @param documentElement 部件的根元素名称
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void putXmlPart(PackagePart part, XmlObject xmlObject, QName documentElement) {
+        XmlOptions xmlOptions = new XmlOptions(POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+        xmlOptions.setSaveSyntheticDocumentElement(documentElement);
+        putPart(part.getPartName().getName().substring(1), outputStream -> xmlObject.save(outputStream, xmlOptions));
+    }
+
+    /**
+     * 写入 POI 包中新增的部件（如水印图片），并登记其内容类型；已通过 putPart 写入的新部件只登记内容类型
+     *
+     * @param opcPackage   POI 包
+     * @param contentTypes 内容类型部件
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void putNewParts(OPCPackage opcPackage, Document contentTypes) throws InvalidFormatException, IOException {
+        for (PackagePart part : opcPackage.getParts()) {
+            String partName = part.getPartName().getName().substring(1);
+            if (part.isRelationshipPart() || hasPart(partName)) {
+                continue;
+            }
+            if (part.getContentType().endsWith("+xml")) {
+                OoxmlUtils.addOverrideContentType(contentTypes, partName, part.getContentType());
+            } else {
+                OoxmlUtils.addDefaultContentType(contentTypes, partName.substring(partName.lastIndexOf('.') + 1),
+                        part.getContentType());
+            }
+            if (!parts.containsKey(partName)) {
+                try (InputStream partStream = part.getInputStream()) {
+                    putPart(partName, IOUtils.toByteArray(partStream));
+                }
+            }
+        }
+    }
+
+    /**
+     * 按 POI 部件当前的关系重新生成关系部件
+     *
+     * @param part POI 部件
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void putRelationships(PackagePart part) throws InvalidFormatException {
+        String partName = part.getPartName().getName().substring(1);
+        Document relationships = OoxmlUtils.createRelationships();
+        for (PackageRelationship relationship : part.getRelationships()) {
+            String target = relationship.getTargetURI().toString();
+            if (relationship.getTargetMode() != TargetMode.EXTERNAL && target.startsWith("/")) {
+                // POI 新建的关系以绝对路径引用目标部件
+                target = OoxmlUtils.relativizePartName(partName, target.substring(1));
+            }
+            Element element = OoxmlUtils.addRelationship(relationships, relationship.getRelationshipType(), target,
+                    relationship.getId());
+            if (relationship.getTargetMode() == TargetMode.EXTERNAL) {
+                element.setAttribute("TargetMode", "External");
+            }
+        }
+        putPart(OoxmlUtils.getRelationshipsPartName(partName), relationships);
+    }
+
+    /**
+     * 写入整个包
+     *
+     * @param outputStream 输出流（不关闭）
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        Map<String, PartWriter> remainingParts = new LinkedHashMap<>(parts);
+        ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+        for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+            PartWriter partWriter = remainingParts.remove(entry.getName());
+            if (partWriter == null) {
+                // 未修改的部件直接复制压缩数据
+                try (InputStream rawStream = zipFile.getRawInputStream(entry)) {
+                    zipOutputStream.addRawArchiveEntry(entry, rawStream);
+                }
+            } else {
+                writePart(zipOutputStream, entry.getName(), partWriter);
+            }
+        }
+        for (Map.Entry<String, PartWriter> part : remainingParts.entrySet()) {
+            writePart(zipOutputStream, part.getKey(), part.getValue());
+        }
+        zipOutputStream.finish();
+    }
+
+    private void writePart(ZipArchiveOutputStream zipOutputStream, String partName, PartWriter partWriter) throws IOException {
+        zipOutputStream.putArchiveEntry(new ZipArchiveEntry(partName));
+        partWriter.write(zipOutputStream);
+        zipOutputStream.closeArchiveEntry();
+    }
+
+    /**
+     * 部件内容的写入方法
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    @FunctionalInterface
+    public interface PartWriter {
+
+        /**
+         * 写入部件内容
+         *
+         * @param outputStream 部件输出流（不能关闭）
+         */
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+}
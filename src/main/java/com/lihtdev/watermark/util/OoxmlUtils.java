@@ -0,0 +1,268 @@
+package com.lihtdev.watermark.util;
+
+import com.lihtdev.watermark.exception.WatermarkException;
+import org.apache.poi.ooxml.util.DocumentHelper;
+import org.apache.poi.openxml4j.opc.PackageNamespaces;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Set;
+
+/**
+ * OOXML（.docx, .xlsx, .pptx）包工具类，在 zip 条目层面读写部件，不通过 POI 加载整个文档
+ * <p>
+ * 部件名称与 zip 条目名称一致，不以 / 开头，如：xl/worksheets/sheet1.xml
+ *
+ * @author lihaitao
+ * @since 2020/7/21
+ */
+public class OoxmlUtils {
+
+    /**
+     * 内容类型部件名称
+     */
+    public static final String CONTENT_TYPES_PART_NAME = "[Content_Types].xml";
+
+    /**
+     * 文档部件中引用关系的属性（如 r:id）的命名空间
+     */
+    public static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    /**
+     * 包的关系部件名称
+     */
+    public static final String PACKAGE_RELATIONSHIPS_PART_NAME = "_rels/.rels";
+
+    /**
+     * 读取 XML 部件
+     *
+     * @param inputStream 部件输入流
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static Document readXml(InputStream inputStream) throws IOException {
+        try {
+            return DocumentHelper.readDocument(inputStream);
+        } catch (SAXException e) {
+            throw new WatermarkException("解析 XML 部件失败：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 将 XML 部件序列化为 UTF-8 编码的字节
+     *
+     * @param document XML 部件
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static byte[] toBytes(Document document) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            document.setXmlStandalone(true);
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.setOutputProperty(OutputKeys.STANDALONE, "yes");
+            transformer.transform(new DOMSource(document), new StreamResult(outputStream));
+        } catch (TransformerException e) {
+            throw new WatermarkException("序列化 XML 部件失败：" + e.getMessage(), e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 获取部件的关系部件名称，如：xl/workbook.xml 的关系部件为 xl/_rels/workbook.xml.rels
+     *
+     * @param partName 部件名称
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static String getRelationshipsPartName(String partName) {
+        int index = partName.lastIndexOf('/');
+        return partName.substring(0, index + 1) + "_rels/" + partName.substring(index + 1) + ".rels";
+    }
+
+    /**
+     * 根据关系的目标获取目标部件名称
+     *
+     * @param sourcePartName 源部件名称
+     * @param target         关系的目标（相对于源部件所在目录，或以 / 开头的绝对路径）
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static String resolvePartName(String sourcePartName, String target) {
+        return URI.create("/" + sourcePartName).resolve(target).getPath().substring(1);
+    }
+
+    /**
+     * 获取目标部件相对于源部件所在目录的路径，作为关系的目标
+     *
+     * @param sourcePartName 源部件名称
+     * @param targetPartName 目标部件名称
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static String relativizePartName(String sourcePartName, String targetPartName) {
+        String[] sourceSegments = sourcePartName.split("/");
+        String[] targetSegments = targetPartName.split("/");
+        int common = 0;
+        while (common < sourceSegments.length - 1 && common < targetSegments.length - 1
+                && sourceSegments[common].equals(targetSegments[common])) {
+            common++;
+        }
+        StringBuilder target = new StringBuilder();
+        for (int i = common; i < sourceSegments.length - 1; i++) {
+            target.append("../");
+        }
+        for (int i = common; i < targetSegments.length; i++) {
+            target.append(targetSegments[i]).append(i < targetSegments.length - 1 ? "/" : "");
+        }
+        return target.toString();
+    }
+
+    /**
+     * 获取未被使用的部件名称
+     *
+     * @param partNames       已有的部件名称（小写）
+     * @param defaultFileName 部件名称模板，# 替换为序号，如：/xl/media/image#.png
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static String getNewPartName(Set<String> partNames, String defaultFileName) {
+        String fileName = defaultFileName.startsWith("/") ? defaultFileName.substring(1) : defaultFileName;
+        for (int index = 1; ; index++) {
+            String partName = fileName.replace("#", String.valueOf(index));
+            if (partNames.add(partName.toLowerCase())) {
+                return partName;
+            }
+        }
+    }
+
+    /**
+     * 创建空的关系部件
+     *
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static Document createRelationships() {
+        Document relationships = DocumentHelper.createDocument();
+        relationships.appendChild(relationships.createElementNS(PackageNamespaces.RELATIONSHIPS, "Relationships"));
+        return relationships;
+    }
+
+    /**
+     * 查找指定类型的第一个关系
+     *
+     * @param relationships 关系部件
+     * @param type          关系类型
+     * @return 关系元素，不存在时返回 null
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static Element getRelationship(Document relationships, String type) {
+        NodeList nodes = relationships.getDocumentElement().getElementsByTagNameNS(PackageNamespaces.RELATIONSHIPS, "Relationship");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element relationship = (Element) nodes.item(i);
+            if (type.equals(relationship.getAttribute("Type"))) {
+                return relationship;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 添加关系
+     *
+     * @param relationships 关系部件
+     * @param type          关系类型
+     * @param target        关系的目标
+     * @return 新关系的 ID
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static String addRelationship(Document relationships, String type, String target) {
+        Element root = relationships.getDocumentElement();
+        NodeList nodes = root.getElementsByTagNameNS(PackageNamespaces.RELATIONSHIPS, "Relationship");
+        int maxId = 0;
+        for (int i = 0; i < nodes.getLength(); i++) {
+            String id = ((Element) nodes.item(i)).getAttribute("Id");
+            if (id.matches("rId\\d{1,9}")) {
+                maxId = Math.max(maxId, Integer.parseInt(id.substring(3)));
+            }
+        }
+        String id = "rId" + (maxId + 1);
+        addRelationship(relationships, type, target, id);
+        return id;
+    }
+
+    /**
+     * 添加指定 ID 的关系
+     *
+     * @param relationships 关系部件
+     * @param type          关系类型
+     * @param target        关系的目标
+     * @param id            关系的 ID
+     * @return 新关系元素
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static Element addRelationship(Document relationships, String type, String target, String id) {
+        Element relationship = relationships.createElementNS(PackageNamespaces.RELATIONSHIPS, "Relationship");
+        relationship.setAttribute("Id", id);
+        relationship.setAttribute("Type", type);
+        relationship.setAttribute("Target", target);
+        relationships.getDocumentElement().appendChild(relationship);
+        return relationship;
+    }
+
+    /**
+     * 添加扩展名的默认内容类型（已存在时不添加）
+     *
+     * @param contentTypes 内容类型部件
+     * @param extension    扩展名
+     * @param contentType  内容类型
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static void addDefaultContentType(Document contentTypes, String extension, String contentType) {
+        Element root = contentTypes.getDocumentElement();
+        NodeList nodes = root.getElementsByTagNameNS(PackageNamespaces.CONTENT_TYPES, "Default");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (extension.equalsIgnoreCase(((Element) nodes.item(i)).getAttribute("Extension"))) {
+                return;
+            }
+        }
+        Element defaultElement = contentTypes.createElementNS(PackageNamespaces.CONTENT_TYPES, "Default");
+        defaultElement.setAttribute("Extension", extension);
+        defaultElement.setAttribute("ContentType", contentType);
+        root.insertBefore(defaultElement, root.getFirstChild());
+    }
+
+    /**
+     * 添加部件的内容类型
+     *
+     * @param contentTypes 内容类型部件
+     * @param partName     部件名称
+     * @param contentType  内容类型
+     * @author lihaitao
+     * @since 2020/7/21
+     */
+    public static void addOverrideContentType(Document contentTypes, String partName, String contentType) {
+        Element overrideElement = contentTypes.createElementNS(PackageNamespaces.CONTENT_TYPES, "Override");
+        overrideElement.setAttribute("PartName", "/" + partName);
+        overrideElement.setAttribute("ContentType", contentType);
+        contentTypes.getDocumentElement().appendChild(overrideElement);
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.lihtdev.watermark.util;
+
+import com.lihtdev.watermark.exception.WatermarkException;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 按行写入 PNG 图片（每像素 8 位的 RGB 或 RGBA），图片分条写入，内存中只保留当前条，
+ * 用于 JDK 自带的 ImageWriter 不支持分块写入时输出超大图片
+ * <p>
+ * 写入完成时调用 {@link #finish()}，无论是否成功都需调用 {@link #close()} 释放压缩器的本地内存
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class PngStripeWriter implements Closeable {
+
+    /**
+     * PNG 文件签名
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * 每个 IDAT 块的最大长度
+     */
+    private static final int IDAT_SIZE = 64 * 1024;
+
+    /**
+     * Sub 过滤器（每个字节减去左边像素的对应字节）
+     */
+    private static final int FILTER_SUB = 1;
+
+    /**
+     * PNG 输出流
+     */
+    private final DataOutputStream outputStream;
+
+    /**
+     * 压缩图像数据的输出流，压缩后的数据写为 IDAT 块
+     */
+    private final DeflaterOutputStream imageDataStream;
+
+    private final Deflater deflater;
+
+    private final int width;
+
+    /**
+     * 每个像素的字节数（RGB 为 3，RGBA 为 4）
+     */
+    private final int bytesPerPixel;
+
+    /**
+     * 当前行（第一个字节为过滤器类型）
+     */
+    private final byte[] row;
+
+    /**
+     * 当前行的像素
+     */
+    private final int[] pixels;
+
+    /**
+     * 还未写入的行数
+     */
+    private int remainingRows;
+
+    /**
+     * 创建 PNG 分条写入器，并写入文件头
+     *
+     * @param outputStream     输出流（不关闭）
+     * @param width            图片宽度
+     * @param height           图片高度
+     * @param alpha            是否包含透明度
+     * @param compressionLevel 压缩级别（0 ~ 9），-1 为默认级别
+     */
+    public PngStripeWriter(OutputStream outputStream, int width, int height, boolean alpha, int compressionLevel) throws IOException {
+        this.outputStream = new DataOutputStream(outputStream);
+        this.width = width;
+        this.bytesPerPixel = alpha ? 4 : 3;
+        this.row = new byte[1 + width * bytesPerPixel];
+        this.pixels = new int[width];
+        this.remainingRows = height;
+
+        this.outputStream.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerStream = new DataOutputStream(header);
+        headerStream.writeInt(width);
+        headerStream.writeInt(height);
+        // 位深度
+        headerStream.writeByte(8);
+        // 颜色类型：6 为 RGBA，2 为 RGB
+        headerStream.writeByte(alpha ? 6 : 2);
+        // 压缩方法、过滤方法、不隔行扫描
+        headerStream.writeByte(0);
+        headerStream.writeByte(0);
+        headerStream.writeByte(0);
+        writeChunk("IHDR", header.toByteArray(), header.size());
+
+        this.deflater = new Deflater(compressionLevel);
+        this.imageDataStream = new DeflaterOutputStream(new ImageDataOutputStream(), deflater, IDAT_SIZE);
+    }
+
+    /**
+     * 写入一条图片（宽度与整张图片相同，按从上到下的顺序写入）
+     *
+     * @param stripe 图片条
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void writeRows(BufferedImage stripe) throws IOException {
+        if (stripe.getWidth() != width || stripe.getHeight() > remainingRows) {
+            throw new WatermarkException("图片条的尺寸与图片不符");
+        }
+        for (int y = 0; y < stripe.getHeight(); y++) {
+            stripe.getRGB(0, y, width, 1, pixels, 0, width);
+            int offset = 1;
+            for (int pixel : pixels) {
+                row[offset++] = (byte) (pixel >> 16);
+                row[offset++] = (byte) (pixel >> 8);
+                row[offset++] = (byte) pixel;
+                if (bytesPerPixel == 4) {
+                    row[offset++] = (byte) (pixel >> 24);
+                }
+            }
+            // 从后向前过滤，使用的左边像素还未被修改
+            for (int i = row.length - 1; i > bytesPerPixel; i--) {
+                row[i] -= row[i - bytesPerPixel];
+            }
+            row[0] = FILTER_SUB;
+            imageDataStream.write(row);
+        }
+        remainingRows -= stripe.getHeight();
+    }
+
+    /**
+     * 写入剩余的图像数据和文件尾
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public void finish() throws IOException {
+        if (remainingRows != 0) {
+            throw new WatermarkException("图片还有 " + remainingRows + " 行未写入");
+        }
+        try {
+            imageDataStream.finish();
+            imageDataStream.flush();
+        } finally {
+            deflater.end();
+        }
+        writeChunk("IEND", new byte[0], 0);
+        outputStream.flush();
+    }
+
+    /**
+     * 释放压缩器的本地内存（写入失败、未调用 finish 时也能释放，不关闭输出流）
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        outputStream.writeInt(length);
+        outputStream.write(typeBytes);
+        outputStream.write(data, 0, length);
+        outputStream.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * 将压缩后的图像数据缓存并写为 IDAT 块
+     */
+    private class ImageDataOutputStream extends OutputStream {
+
+        private final byte[] buffer = new byte[IDAT_SIZE];
+
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) {
+                flush();
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) {
+                    flush();
+                }
+                int count = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, count);
+                size += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                writeChunk("IDAT", buffer, size);
+                size = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.lihtdev.watermark.util;
+
+import com.lihtdev.watermark.exception.WatermarkException;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * 像素数组混合工具类：直接在图片的 DataBufferInt / DataBufferByte 像素数组上按 SRC_ATOP 规则混合预乘透明度的精灵图，
+ * 不经过 Java2D 的通用合成循环；每行的混合为简单的基本类型循环
+ * <p>
+ * 与 {@link java.awt.AlphaComposite#SrcAtop} 的误差每个分量不超过 1；只支持不透明和预乘透明度的图片，
+ * 未预乘透明度的图片（INT_ARGB、4BYTE_ABGR）Java2D 会先按 8 位预乘再除回透明度，颜色的误差随透明度降低而变大，仍使用 Graphics2D
+ * <p>
+ * 支持的图片类型见 {@link #isSupported(BufferedImage)}，精灵图必须为 {@link BufferedImage#TYPE_INT_ARGB_PRE}
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class RasterBlender {
+
+    /**
+     * 判断是否支持直接混合该图片（不透明或预乘透明度的图片）
+     *
+     * @param image 图片
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static boolean isSupported(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                return image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel;
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return image.getRaster().getSampleModel() instanceof ComponentSampleModel;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 将精灵图的左上角放在图片的 (x, y) 处，按 SRC_ATOP 规则混合（只混合在图片不透明的区域，图片的透明度不变，每个分量误差不超过 1），超出图片的部分不混合
+     *
+     * @param image  图片（见 {@link #isSupported(BufferedImage)}）
+     * @param sprite 预乘透明度的精灵图
+     * @param x      精灵图左上角的 x 坐标
+     * @param y      精灵图左上角的 y 坐标
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static void blendSrcAtop(BufferedImage image, BufferedImage sprite, int x, int y) {
+        if (sprite.getType() != BufferedImage.TYPE_INT_ARGB_PRE || !isSupported(image)) {
+            throw new WatermarkException("不支持直接混合的图片类型");
+        }
+        int left = Math.max(x, 0);
+        int top = Math.max(y, 0);
+        int right = Math.min(x + sprite.getWidth(), image.getWidth());
+        int bottom = Math.min(y + sprite.getHeight(), image.getHeight());
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        WritableRaster spriteRaster = sprite.getRaster();
+        int[] src = ((DataBufferInt) spriteRaster.getDataBuffer()).getData();
+        int srcStride = ((SinglePixelPackedSampleModel) spriteRaster.getSampleModel()).getScanlineStride();
+        int srcIndex = spriteRaster.getDataBuffer().getOffset()
+                + (top - y - spriteRaster.getSampleModelTranslateY()) * srcStride + left - x - spriteRaster.getSampleModelTranslateX();
+
+        WritableRaster raster = image.getRaster();
+        int width = right - left;
+        if (raster.getDataBuffer() instanceof DataBufferInt) {
+            int[] dst = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int dstStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int dstIndex = raster.getDataBuffer().getOffset()
+                    + (top - raster.getSampleModelTranslateY()) * dstStride + left - raster.getSampleModelTranslateX();
+            for (int row = top; row < bottom; row++, srcIndex += srcStride, dstIndex += dstStride) {
+                switch (image.getType()) {
+                    case BufferedImage.TYPE_INT_RGB:
+                        blendIntRgb(src, srcIndex, dst, dstIndex, width);
+                        break;
+                    case BufferedImage.TYPE_INT_BGR:
+                        blendIntBgr(src, srcIndex, dst, dstIndex, width);
+                        break;
+                    default:
+                        blendIntArgbPre(src, srcIndex, dst, dstIndex, width);
+                        break;
+                }
+            }
+        } else {
+            byte[] dst = ((DataBufferByte) raster.getDataBuffer()).getData();
+            ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+            int dstStride = sampleModel.getScanlineStride();
+            int pixelStride = sampleModel.getPixelStride();
+            int[] bandOffsets = sampleModel.getBandOffsets();
+            int dstIndex = raster.getDataBuffer().getOffset()
+                    + (top - raster.getSampleModelTranslateY()) * dstStride + (left - raster.getSampleModelTranslateX()) * pixelStride;
+            for (int row = top; row < bottom; row++, srcIndex += srcStride, dstIndex += dstStride) {
+                if (bandOffsets.length > 3) {
+                    blendPremultipliedBytes(src, srcIndex, dst, dstIndex, width, pixelStride, bandOffsets);
+                } else {
+                    blendOpaqueBytes(src, srcIndex, dst, dstIndex, width, pixelStride, bandOffsets);
+                }
+            }
+        }
+    }
+
+    /**
+     * 0x00RRGGBB：不透明的图片，结果 = 精灵图 + 图片 × (1 - 精灵图透明度)
+     */
+    private static void blendIntRgb(int[] src, int srcIndex, int[] dst, int dstIndex, int width) {
+        for (int i = 0; i < width; i++) {
+            int s = src[srcIndex + i];
+            int sa = s >>> 24;
+            if (sa == 0) {
+                continue;
+            }
+            int d = dst[dstIndex + i];
+            int inv = 255 - sa;
+            int r = (s >> 16 & 0xFF) + mul(d >> 16 & 0xFF, inv);
+            int g = (s >> 8 & 0xFF) + mul(d >> 8 & 0xFF, inv);
+            int b = (s & 0xFF) + mul(d & 0xFF, inv);
+            dst[dstIndex + i] = r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+     * 0x00BBGGRR：不透明的图片
+     */
+    private static void blendIntBgr(int[] src, int srcIndex, int[] dst, int dstIndex, int width) {
+        for (int i = 0; i < width; i++) {
+            int s = src[srcIndex + i];
+            int sa = s >>> 24;
+            if (sa == 0) {
+                continue;
+            }
+            int d = dst[dstIndex + i];
+            int inv = 255 - sa;
+            int r = (s >> 16 & 0xFF) + mul(d & 0xFF, inv);
+            int g = (s >> 8 & 0xFF) + mul(d >> 8 & 0xFF, inv);
+            int b = (s & 0xFF) + mul(d >> 16 & 0xFF, inv);
+            dst[dstIndex + i] = b << 16 | g << 8 | r;
+        }
+    }
+
+    /**
+     * 0xAARRGGBB（预乘）：结果 = 精灵图 × 图片透明度 + 图片 × (1 - 精灵图透明度)
+     */
+    private static void blendIntArgbPre(int[] src, int srcIndex, int[] dst, int dstIndex, int width) {
+        for (int i = 0; i < width; i++) {
+            int s = src[srcIndex + i];
+            int sa = s >>> 24;
+            int d = dst[dstIndex + i];
+            int da = d >>> 24;
+            if (sa == 0 || da == 0) {
+                continue;
+            }
+            int inv = 255 - sa;
+            int r = mul(s >> 16 & 0xFF, da) + mul(d >> 16 & 0xFF, inv);
+            int g = mul(s >> 8 & 0xFF, da) + mul(d >> 8 & 0xFF, inv);
+            int b = mul(s & 0xFF, da) + mul(d & 0xFF, inv);
+            dst[dstIndex + i] = da << 24 | r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+     * 按字节存储的不透明图片（3BYTE_BGR），各分量的位置由 bandOffsets 给出（R、G、B）
+     */
+    private static void blendOpaqueBytes(int[] src, int srcIndex, byte[] dst, int dstIndex, int width,
+                                         int pixelStride, int[] bandOffsets) {
+        int rIndex = dstIndex + bandOffsets[0];
+        int gIndex = dstIndex + bandOffsets[1];
+        int bIndex = dstIndex + bandOffsets[2];
+        for (int i = 0; i < width; i++, rIndex += pixelStride, gIndex += pixelStride, bIndex += pixelStride) {
+            int s = src[srcIndex + i];
+            int sa = s >>> 24;
+            if (sa == 0) {
+                continue;
+            }
+            int inv = 255 - sa;
+            dst[rIndex] = (byte) ((s >> 16 & 0xFF) + mul(dst[rIndex] & 0xFF, inv));
+            dst[gIndex] = (byte) ((s >> 8 & 0xFF) + mul(dst[gIndex] & 0xFF, inv));
+            dst[bIndex] = (byte) ((s & 0xFF) + mul(dst[bIndex] & 0xFF, inv));
+        }
+    }
+
+    /**
+     * 按字节存储的预乘透明度图片（4BYTE_ABGR_PRE），各分量的位置由 bandOffsets 给出（R、G、B、A），透明度不变
+     */
+    private static void blendPremultipliedBytes(int[] src, int srcIndex, byte[] dst, int dstIndex, int width,
+                                                int pixelStride, int[] bandOffsets) {
+        int rOffset = bandOffsets[0];
+        int gOffset = bandOffsets[1];
+        int bOffset = bandOffsets[2];
+        int aOffset = bandOffsets[3];
+        for (int i = 0; i < width; i++, dstIndex += pixelStride) {
+            int s = src[srcIndex + i];
+            int sa = s >>> 24;
+            if (sa == 0) {
+                continue;
+            }
+            int da = dst[dstIndex + aOffset] & 0xFF;
+            if (da == 0) {
+                continue;
+            }
+            int inv = 255 - sa;
+            dst[dstIndex + rOffset] = (byte) (mul(s >> 16 & 0xFF, da) + mul(dst[dstIndex + rOffset] & 0xFF, inv));
+            dst[dstIndex + gOffset] = (byte) (mul(s >> 8 & 0xFF, da) + mul(dst[dstIndex + gOffset] & 0xFF, inv));
+            dst[dstIndex + bOffset] = (byte) (mul(s & 0xFF, da) + mul(dst[dstIndex + bOffset] & 0xFF, inv));
+        }
+    }
+
+    /*
+     * a × b / 255（四舍五入）
+     */
+    private static int mul(int a, int b) {
+        int t = a * b + 128;
+        return (t + (t >> 8)) >> 8;
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.lihtdev.watermark.util;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 水印精灵图缓存：按水印定义（文本、字体、颜色、透明度、旋转角度、图片摘要和尺寸等）缓存已绘制好透明度和旋转的 ARGB 水印图片（预乘透明度），
+ * 添加水印时只需要逐个复制精灵图，不需要重新绘制文字或缩放图片
+ * <p>
+ * 按最近最少使用的顺序淘汰，缓存的图片占用的内存不超过上限
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class SpriteCache {
+
+    /**
+     * 缓存的精灵图占用内存的默认上限（字节）
+     */
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * 精灵图（按访问顺序排列，最近使用的在最后）
+     */
+    private static final Map<Object, Sprite> sprites = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 缓存的精灵图占用内存的上限（字节）
+     */
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+
+    /**
+     * 缓存的精灵图占用的内存（字节）
+     */
+    private static long bytes;
+
+    /**
+     * 获取精灵图，不存在时绘制并缓存（绘制时不加锁，并发时可能重复绘制）
+     *
+     * @param key      水印定义，需要正确实现 equals 和 hashCode，如：Arrays.asList(...)
+     * @param renderer 精灵图的绘制方法
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static Sprite get(Object key, Supplier<Sprite> renderer) {
+        synchronized (sprites) {
+            Sprite sprite = sprites.get(key);
+            if (sprite != null) {
+                return sprite;
+            }
+        }
+        Sprite sprite = renderer.get();
+        synchronized (sprites) {
+            Sprite previous = sprites.put(key, sprite);
+            if (previous != null) {
+                bytes -= previous.getBytes();
+            }
+            bytes += sprite.getBytes();
+            evict();
+        }
+        return sprite;
+    }
+
+    /**
+     * 绘制精灵图：将水印绕原点旋转后绘制到刚好容纳它的透明图片上，透明度绘制到图片中
+     *
+     * @param bounds   水印未旋转时的区域（相对于水印的原点，如文字为基线的起点）
+     * @param rotation 旋转角度（弧度）
+     * @param opacity  透明度
+     * @param painter  水印的绘制方法（以水印的原点为坐标原点）
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static Sprite render(Rectangle2D bounds, double rotation, float opacity, Consumer<Graphics2D> painter) {
+        AffineTransform transform = AffineTransform.getRotateInstance(rotation);
+        Rectangle spriteBounds = transform.createTransformedShape(bounds).getBounds();
+        // 留出插值和边缘的像素
+        spriteBounds.grow(1, 1);
+        BufferedImage image = new BufferedImage(spriteBounds.width, spriteBounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+        g.translate(-spriteBounds.x, -spriteBounds.y);
+        g.transform(transform);
+        painter.accept(g);
+        g.dispose();
+        return new Sprite(image, spriteBounds.x, spriteBounds.y);
+    }
+
+    /**
+     * 获取缓存的精灵图占用内存的上限
+     *
+     * @return 内存上限（字节）
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static long getMaxBytes() {
+        synchronized (sprites) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * 设置缓存的精灵图占用内存的上限，为 0 时不缓存
+     *
+     * @param maxBytes 内存上限（字节）
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static void setMaxBytes(long maxBytes) {
+        synchronized (sprites) {
+            SpriteCache.maxBytes = maxBytes;
+            evict();
+        }
+    }
+
+    /**
+     * 清空缓存
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static void clear() {
+        synchronized (sprites) {
+            sprites.clear();
+            bytes = 0;
+        }
+    }
+
+    /*
+     * 淘汰最近最少使用的精灵图，直到占用的内存不超过上限
+     */
+    private static void evict() {
+        Iterator<Sprite> iterator = sprites.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getBytes();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 精灵图：已绘制好透明度和旋转的水印图片，以及图片左上角相对于水印原点的偏移量
+     *
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static class Sprite {
+
+        private final BufferedImage image;
+
+        private final int offsetX;
+
+        private final int offsetY;
+
+        public Sprite(BufferedImage image, int offsetX, int offsetY) {
+            this.image = image;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public int getOffsetX() {
+            return offsetX;
+        }
+
+        public int getOffsetY() {
+            return offsetY;
+        }
+
+        /**
+         * 获取水印原点在 (x, y) 处时精灵图的区域
+         *
+         * @param x 水印原点的 x 坐标
+         * @param y 水印原点的 y 坐标
+         */
+        public Rectangle getBounds(double x, double y) {
+            return new Rectangle((int) Math.round(x) + offsetX, (int) Math.round(y) + offsetY, image.getWidth(), image.getHeight());
+        }
+
+        private long getBytes() {
+            return (long) image.getWidth() * image.getHeight() * 4;
+        }
+    }
+
+}
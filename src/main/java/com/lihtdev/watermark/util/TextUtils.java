@@ -1,7 +1,20 @@
 package com.lihtdev.watermark.util;
 
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfSimpleFont;
+import com.itextpdf.kernel.font.PdfType0Font;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * 文本工具类
+ * 文本工具类（按字体的实际字形度量计算文本尺寸，并缓存计算结果；除返回数组副本的 {@link #getTextWidthAndHeight(Font, String)} 外，命中缓存时不创建任何对象）
  *
  * @author lihaitao
  * @since 2020/07/14
@@ -9,20 +22,52 @@ package com.lihtdev.watermark.util;
 public class TextUtils {
 
     /**
-     * 获取文字水印的宽度和高度
-     * 中文字符的宽高比例为 1:1，英文字符的宽高比例为 1:
-     * 一个中文字符占3个字节，一个英文字符占1个字节
+     * 每种字体缓存的文本数量上限，超过时清空该字体的缓存
+     */
+    private static final int TEXT_CACHE_SIZE = 1024;
+
+    /**
+     * 缓存的 Java 字体数量上限（每种字号和样式都是单独的字体），超过时清空全部缓存
+     */
+    private static final int FONT_CACHE_SIZE = 64;
+
+    /**
+     * PDF 字体的度量单位（字形宽度以 1000 为一个字号）
+     */
+    private static final float PDF_FONT_UNITS = 1000;
+
+    /**
+     * 文本度量使用的渲染上下文（无缩放，开启抗锯齿和小数度量，与绘制水印时一致，单位与字号相同）
+     */
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+    /**
+     * Java 字体的文本尺寸缓存（字体 -> 文本 -> 宽度和高度），字体包含字号和样式
+     */
+    private static final Map<Font, Map<String, int[]>> fontTextSizeCache = new ConcurrentHashMap<>();
+
+    /**
+     * PDF 字体程序的文本尺寸缓存（字体程序 -> 编码 -> 文本 -> 字号为 1000 时的宽度、上升高度和下降高度），与字号无关，
+     * 同一字体程序使用不同编码时字形宽度不同，按编码分别缓存；字体程序从缓存中淘汰后自动释放
+     */
+    private static final Map<FontProgram, Map<String, Map<String, float[]>>> pdfTextSizeCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * 估算文字水印的宽度和高度（中文字符按 1 个字号宽，英文字符按半个字号宽）
      *
      * @param fontSize 字体大小
      * @param text     水印文本
      * @author lihaitao
      * @since 2020/07/14
+     * @deprecated 估算的宽度与实际字形不符，使用 {@link #getTextWidthAndHeight(Font, String)} 或
+     * {@link #getTextWidth(PdfFont, float, String)}
      */
+    @Deprecated
     public static int[] getTextWidthAndHeight(int fontSize, String text) {
         int length = text.length();
         for (int i = 0; i < text.length(); i++) {
-            String s = String.valueOf(text.charAt(i));
-            if (s.getBytes().length > 1) {
+            // 非 ASCII 字符按 2 个英文字符计算
+            if (text.charAt(i) > 0x7F) {
                 length++;
             }
         }
@@ -32,4 +77,126 @@ public class TextUtils {
         return new int[]{width, height};
     }
 
+    /**
+     * 获取文本的宽度和高度（按 Java 字体的实际度量，宽度为文本的步进宽度，高度为字体的上升高度与下降高度之和，单位与字号相同）
+     * <p>
+     * 返回的数组为缓存结果的副本，可以修改；频繁调用时使用 {@link #getTextWidth(Font, String)} 和 {@link #getTextHeight(Font, String)}，命中缓存时不创建对象
+     *
+     * @param font 字体（包含字号和样式）
+     * @param text 文本
+     * @author lihaitao
+     * @since 2020/07/14
+     */
+    public static int[] getTextWidthAndHeight(Font font, String text) {
+        return getTextSize(font, text).clone();
+    }
+
+    /**
+     * 获取文本的宽度（按 Java 字体的实际度量，为文本的步进宽度，单位与字号相同）
+     *
+     * @param font 字体（包含字号和样式）
+     * @param text 文本
+     * @author lihaitao
+     * @since 2020/07/14
+     */
+    public static int getTextWidth(Font font, String text) {
+        return getTextSize(font, text)[0];
+    }
+
+    /**
+     * 获取文本的高度（按 Java 字体的实际度量，为字体的上升高度与下降高度之和，单位与字号相同）
+     *
+     * @param font 字体（包含字号和样式）
+     * @param text 文本
+     * @author lihaitao
+     * @since 2020/07/14
+     */
+    public static int getTextHeight(Font font, String text) {
+        return getTextSize(font, text)[1];
+    }
+
+    /*
+     * 获取文本的宽度和高度，优先从缓存中获取（返回缓存的数组，不能修改）
+     */
+    private static int[] getTextSize(Font font, String text) {
+        if (fontTextSizeCache.size() >= FONT_CACHE_SIZE && !fontTextSizeCache.containsKey(font)) {
+            fontTextSizeCache.clear();
+        }
+        Map<String, int[]> textSizes = fontTextSizeCache.computeIfAbsent(font, key -> new ConcurrentHashMap<>());
+        int[] textSize = textSizes.get(text);
+        if (textSize == null) {
+            if (textSizes.size() >= TEXT_CACHE_SIZE) {
+                textSizes.clear();
+            }
+            LineMetrics lineMetrics = font.getLineMetrics(text, FONT_RENDER_CONTEXT);
+            int width = (int) Math.ceil(font.getStringBounds(text, FONT_RENDER_CONTEXT).getWidth());
+            int height = (int) Math.ceil(lineMetrics.getAscent() + lineMetrics.getDescent());
+            textSize = new int[]{width, height};
+            textSizes.put(text, textSize);
+        }
+        return textSize;
+    }
+
+    /**
+     * 获取文本在 PDF 中的宽度（按字形宽度计算）
+     *
+     * @param font     PDF 字体
+     * @param fontSize 字体大小
+     * @param text     文本
+     * @author lihaitao
+     * @since 2020/07/14
+     */
+    public static float getTextWidth(PdfFont font, float fontSize, String text) {
+        return getPdfTextSize(font, text)[0] * fontSize / PDF_FONT_UNITS;
+    }
+
+    /**
+     * 获取文本在 PDF 中的高度（按文本中字形的最大上升高度与最大下降高度计算）
+     *
+     * @param font     PDF 字体
+     * @param fontSize 字体大小
+     * @param text     文本
+     * @author lihaitao
+     * @since 2020/07/14
+     */
+    public static float getTextHeight(PdfFont font, float fontSize, String text) {
+        float[] textSize = getPdfTextSize(font, text);
+        return (textSize[1] - textSize[2]) * fontSize / PDF_FONT_UNITS;
+    }
+
+    /*
+     * 获取字号为 1000 时文本的宽度、上升高度和下降高度，优先从缓存中获取
+     */
+    private static float[] getPdfTextSize(PdfFont font, String text) {
+        Map<String, Map<String, float[]>> encodingTextSizes = pdfTextSizeCache.get(font.getFontProgram());
+        if (encodingTextSizes == null) {
+            encodingTextSizes = new ConcurrentHashMap<>();
+            pdfTextSizeCache.put(font.getFontProgram(), encodingTextSizes);
+        }
+        Map<String, float[]> textSizes = encodingTextSizes.computeIfAbsent(getEncodingName(font), key -> new ConcurrentHashMap<>());
+        float[] textSize = textSizes.get(text);
+        if (textSize == null) {
+            if (textSizes.size() >= TEXT_CACHE_SIZE) {
+                textSizes.clear();
+            }
+            textSize = new float[]{font.getWidth(text, PDF_FONT_UNITS),
+                    font.getAscent(text, PDF_FONT_UNITS), font.getDescent(text, PDF_FONT_UNITS)};
+            textSizes.put(text, textSize);
+        }
+        return textSize;
+    }
+
+    /*
+     * 获取 PDF 字体的编码名称（复合字体为 CMap 名称，简单字体为基础编码）
+     */
+    private static String getEncodingName(PdfFont font) {
+        if (font instanceof PdfType0Font) {
+            return ((PdfType0Font) font).getCmap().getCmapName();
+        }
+        if (font instanceof PdfSimpleFont) {
+            return String.valueOf(((PdfSimpleFont<?>) font).getFontEncoding().getBaseEncoding());
+        }
+        return font.getClass().getName();
+    }
+
 }
@@ -8,6 +8,8 @@ import com.lihtdev.watermark.model.Watermark;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 
 /**
  * 水印工具类
@@ -77,6 +79,36 @@ public class WatermarkUtils {
         }
     }
 
+    /**
+     * 为本地 PDF 文件设置水印（通过内存映射随机读取，无需先将整个文件读入堆内存）
+     *
+     * @param path         文件路径
+     * @param outputStream 加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/3
+     */
+    public static void setWatermarkForPdf(Path path, OutputStream outputStream, Watermark watermark) throws IOException {
+        try (WatermarkCreator watermarkCreator = new PdfWatermarkCreator()) {
+            watermarkCreator.create(path, outputStream, watermark);
+        }
+    }
+
+    /**
+     * 为 PDF 文件设置水印（通过内存映射随机读取，无需先将整个文件读入堆内存）
+     *
+     * @param fileChannel  文件通道
+     * @param outputStream 加水印后的文件输出流
+     * @param watermark    水印
+     * @author lihaitao
+     * @since 2020/7/3
+     */
+    public static void setWatermarkForPdf(FileChannel fileChannel, OutputStream outputStream, Watermark watermark) throws IOException {
+        try (WatermarkCreator watermarkCreator = new PdfWatermarkCreator()) {
+            watermarkCreator.create(fileChannel, outputStream, watermark);
+        }
+    }
+
     /**
      * 为图片设置水印
      *
@@ -0,0 +1,188 @@
+package com.lihtdev.watermark.util;
+
+import com.lihtdev.watermark.exception.WatermarkException;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFactory;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRelation;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.CTAnchor;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBody;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHdrFtr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTHdrFtrRef;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSectPr;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STHdrFtr;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Word（.docx）文档工具类，按节的属性处理页眉，使水印出现在每一页上
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class WordUtils {
+
+    /**
+     * 节中可以引用的页眉类型
+     */
+    private static final STHdrFtr.Enum[] HEADER_TYPES = {STHdrFtr.DEFAULT, STHdrFtr.FIRST, STHdrFtr.EVEN};
+
+    /**
+     * 查找 <wp:docPr/> 节点的路径（内嵌和浮动的绘图对象都有该节点）
+     */
+    private static final String DOC_PR_PATH = "declare namespace wp='"
+            + CTAnchor.type.getName().getNamespaceURI() + "' .//wp:docPr";
+
+    /**
+     * <wp:docPr/> 节点的 id 属性
+     */
+    private static final QName ID_ATTRIBUTE = new QName("id");
+
+    /**
+     * 按文档顺序获取所有节的属性（除最后一节外，节的属性在该节最后一个段落中，最后一节的属性在 body 中，未设置时不返回）
+     *
+     * @param doc 文档
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static List<CTSectPr> getSections(XWPFDocument doc) {
+        List<CTSectPr> sections = new ArrayList<>();
+        for (XWPFParagraph paragraph : doc.getParagraphs()) {
+            CTPPr pPr = paragraph.getCTP().getPPr();
+            if (pPr != null && pPr.isSetSectPr()) {
+                sections.add(pPr.getSectPr());
+            }
+        }
+        CTBody body = doc.getDocument().getBody();
+        if (body.isSetSectPr()) {
+            sections.add(body.getSectPr());
+        }
+        return sections;
+    }
+
+    /**
+     * 获取覆盖所有页的页眉：各节已有的首页、奇数页和偶数页页眉，第一节缺少的页眉类型引用同一个新建的页眉
+     * （之后的节缺少页眉时沿用上一节的页眉，不需要处理），每个页眉只返回一次
+     *
+     * @param doc 文档
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static List<XWPFHeader> getSectionHeaders(XWPFDocument doc) {
+        CTBody body = doc.getDocument().getBody();
+        if (!body.isSetSectPr()) {
+            body.addNewSectPr();
+        }
+        List<XWPFHeader> headers = new ArrayList<>();
+        XWPFHeader sharedHeader = null;
+        List<CTSectPr> sections = getSections(doc);
+        for (int i = 0; i < sections.size(); i++) {
+            CTSectPr sectPr = sections.get(i);
+            for (STHdrFtr.Enum type : HEADER_TYPES) {
+                CTHdrFtrRef reference = getHeaderReference(sectPr, type);
+                if (reference != null) {
+                    POIXMLDocumentPart part = doc.getRelationById(reference.getId());
+                    if (part instanceof XWPFHeader && !headers.contains(part)) {
+                        headers.add((XWPFHeader) part);
+                    }
+                } else if (i == 0) {
+                    if (sharedHeader == null) {
+                        sharedHeader = createHeader(doc);
+                        headers.add(sharedHeader);
+                    }
+                    CTHdrFtrRef newReference = sectPr.addNewHeaderReference();
+                    newReference.setType(type);
+                    newReference.setId(doc.getRelationId(sharedHeader));
+                }
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * 新建页眉部件（只建立文档到页眉的关系，由调用者在节中引用）
+     *
+     * @param doc 文档
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static XWPFHeader createHeader(XWPFDocument doc) {
+        try {
+            int number = 1;
+            while (doc.getPackage().getPart(PackagingURIHelper.createPartName(XWPFRelation.HEADER.getFileName(number))) != null) {
+                number++;
+            }
+            XWPFHeader header = (XWPFHeader) doc.createRelationship(XWPFRelation.HEADER, XWPFFactory.getInstance(), number);
+            header.setXWPFDocument(doc);
+            header.setHeaderFooter(CTHdrFtr.Factory.newInstance());
+            return header;
+        } catch (InvalidFormatException e) {
+            throw new WatermarkException("给Word文件添加页眉时发生错误：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 获取页眉的第一个段落，没有段落时新建
+     *
+     * @param header 页眉
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static XWPFParagraph getFirstParagraph(XWPFHeader header) {
+        if (header.getParagraphs().isEmpty()) {
+            header.createParagraph();
+        }
+        return header.getParagraphArray(0);
+    }
+
+    /**
+     * 获取正文、页眉和页脚中已有的最大绘图对象 ID（wp:docPr/@id），同一文档中的 ID 重复时 Word 会提示文件损坏
+     *
+     * @param doc 文档
+     * @author lihaitao
+     * @since 2020/7/22
+     */
+    public static long getMaxDrawingId(XWPFDocument doc) {
+        List<XmlObject> parts = new ArrayList<>();
+        parts.add(doc.getDocument());
+        doc.getHeaderList().forEach(header -> parts.add(header._getHdrFtr()));
+        doc.getFooterList().forEach(footer -> parts.add(footer._getHdrFtr()));
+        long maxId = 0;
+        for (XmlObject part : parts) {
+            for (XmlObject docPr : part.selectPath(DOC_PR_PATH)) {
+                XmlCursor cursor = docPr.newCursor();
+                try {
+                    String id = cursor.getAttributeText(ID_ATTRIBUTE);
+                    if (id != null && id.trim().matches("\\d{1,18}")) {
+                        maxId = Math.max(maxId, Long.parseLong(id.trim()));
+                    }
+                } finally {
+                    cursor.dispose();
+                }
+            }
+        }
+        return maxId;
+    }
+
+    /*
+     * 获取节中指定类型的页眉引用，不存在时返回 null
+     */
+    private static CTHdrFtrRef getHeaderReference(CTSectPr sectPr, STHdrFtr.Enum type) {
+        for (CTHdrFtrRef reference : sectPr.getHeaderReferenceList()) {
+            if (reference.getType() == type) {
+                return reference;
+            }
+        }
+        return null;
+    }
+
+}
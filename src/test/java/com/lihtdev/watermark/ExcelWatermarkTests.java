@@ -1,11 +1,25 @@
 package com.lihtdev.watermark;
 
+import com.lihtdev.watermark.creator.WatermarkCreator;
+import com.lihtdev.watermark.creator.impl.ExcelWatermarkCreator;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.util.WatermarkUtils;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * @author lihaitao
@@ -110,4 +124,117 @@ public class ExcelWatermarkTests {
         }
     }
 
+    /**
+     * 多个工作表的重复水印只添加一张图片
+     */
+    @Test
+    public void testSetRepeatImageWatermarkAddsPictureOnce() throws IOException, InvalidFormatException {
+        byte[] excel = createWorkbook();
+
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        ImageWatermark watermark = createImageWatermark(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        WatermarkUtils.setWatermarkForExcel(new ByteArrayInputStream(excel), outputStream, watermark);
+
+        try (OPCPackage pkg = OPCPackage.open(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            List<PackagePart> mediaParts = pkg.getPartsByName(Pattern.compile("/xl/media/.*"));
+            Assertions.assertEquals(1, mediaParts.size());
+        }
+    }
+
+    /**
+     * 重复水印绘制为一张图片，作为工作表背景
+     */
+    @Test
+    public void testSetBackgroundRepeatImageWatermark() throws IOException {
+        byte[] excel = createWorkbook();
+
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+        ImageWatermark watermark = createImageWatermark(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WatermarkCreator watermarkCreator = new ExcelWatermarkCreator(ExcelWatermarkCreator.RepeatMode.BACKGROUND)) {
+            watermarkCreator.create(new ByteArrayInputStream(excel), outputStream, watermark);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(1, workbook.getAllPictures().size());
+            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                XSSFSheet sheet = workbook.getSheetAt(i);
+                Assertions.assertTrue(sheet.getCTWorksheet().isSetPicture());
+                Assertions.assertNull(sheet.getDrawingPatriarch());
+            }
+        }
+    }
+
+    /**
+     * 流式添加重复的图片水印（不加载工作簿，已有绘图的工作表在原绘图中添加水印）
+     */
+    @Test
+    public void testSetStreamingRepeatImageWatermark() throws IOException {
+        ByteArrayOutputStream excelStream = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            workbook.createSheet().createRow(0).createCell(0).setCellValue("sheet0");
+            XSSFSheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("sheet1");
+            int pictureIndex = workbook.addPicture(createImage(), Workbook.PICTURE_TYPE_PNG);
+            sheet.createDrawingPatriarch().createPicture(new XSSFClientAnchor(0, 0, 0, 0, 2, 2, 4, 4), pictureIndex);
+            workbook.write(excelStream);
+        }
+
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setRows(3);
+        watermarkStyle.setCols(3);
+        ImageWatermark watermark = createImageWatermark(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ExcelWatermarkCreator watermarkCreator = new ExcelWatermarkCreator()) {
+            watermarkCreator.setStreaming(true);
+            watermarkCreator.create(new ByteArrayInputStream(excelStream.toByteArray()), outputStream, watermark);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(9, workbook.getSheetAt(0).getDrawingPatriarch().getShapes().size());
+            Assertions.assertEquals(10, workbook.getSheetAt(1).getDrawingPatriarch().getShapes().size());
+            Assertions.assertEquals("sheet0", workbook.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+            Assertions.assertEquals("sheet1", workbook.getSheetAt(1).getRow(0).getCell(0).getStringCellValue());
+        }
+    }
+
+    /*
+     * 创建有三个工作表的工作簿
+     */
+    private byte[] createWorkbook() throws IOException {
+        ByteArrayOutputStream excelStream = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            for (int i = 0; i < 3; i++) {
+                workbook.createSheet().createRow(0).createCell(0).setCellValue("sheet" + i);
+            }
+            workbook.write(excelStream);
+        }
+        return excelStream.toByteArray();
+    }
+
+    /*
+     * 创建 100x40 的透明 PNG 图片水印
+     */
+    private ImageWatermark createImageWatermark(WatermarkStyle watermarkStyle) throws IOException {
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(createImage()));
+        watermark.setWidth(100);
+        watermark.setHeight(40);
+        watermark.setStyle(watermarkStyle);
+        return watermark;
+    }
+
+    /*
+     * 创建 100x40 的透明 PNG 图片
+     */
+    private byte[] createImage() throws IOException {
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(100, 40, BufferedImage.TYPE_INT_ARGB), "png", imageStream);
+        return imageStream.toByteArray();
+    }
+
 }
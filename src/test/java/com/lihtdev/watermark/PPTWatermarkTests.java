@@ -0,0 +1,142 @@
+package com.lihtdev.watermark;
+
+import com.lihtdev.watermark.creator.impl.PPTWatermarkCreator;
+import com.lihtdev.watermark.model.*;
+import org.apache.poi.hslf.usermodel.HSLFPictureShape;
+import org.apache.poi.hslf.usermodel.HSLFSlideShow;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFSlideMaster;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+/**
+ * 给 ppt 文件添加水印的测试类
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class PPTWatermarkTests {
+
+    /**
+     * 在母版上添加重复的图片水印（隐藏母版图形的幻灯片单独添加）
+     */
+    @Test
+    public void testSetMasterRepeatImageWatermark() throws IOException {
+        ByteArrayOutputStream outputStream = createWatermark(PPTWatermarkCreator.PlacementMode.MASTER, false);
+
+        try (XMLSlideShow slideShow = new XMLSlideShow(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(1, slideShow.getPictureData().size());
+            for (XSLFSlideMaster master : slideShow.getSlideMasters()) {
+                Assertions.assertEquals(4, master.getShapes().stream().filter(shape -> shape.getShapeName().startsWith("Watermark")).count());
+            }
+            Assertions.assertEquals(1, slideShow.getSlides().get(0).getShapes().size());
+            Assertions.assertEquals(5, slideShow.getSlides().get(2).getShapes().size());
+        }
+    }
+
+    /**
+     * 在每张幻灯片上添加重复的图片水印
+     */
+    @Test
+    public void testSetSlideRepeatImageWatermark() throws IOException {
+        ByteArrayOutputStream outputStream = createWatermark(PPTWatermarkCreator.PlacementMode.SLIDE, false);
+
+        try (XMLSlideShow slideShow = new XMLSlideShow(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(1, slideShow.getPictureData().size());
+            for (XSLFSlide slide : slideShow.getSlides()) {
+                Assertions.assertEquals(5, slide.getShapes().size());
+            }
+        }
+    }
+
+    /**
+     * 原样复制未修改的部件
+     */
+    @Test
+    public void testSetRawCopyRepeatImageWatermark() throws IOException {
+        ByteArrayOutputStream outputStream = createWatermark(PPTWatermarkCreator.PlacementMode.MASTER, true);
+
+        try (XMLSlideShow slideShow = new XMLSlideShow(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(1, slideShow.getPictureData().size());
+            Assertions.assertEquals(4, slideShow.getSlideMasters().get(0).getShapes().stream()
+                    .filter(shape -> shape.getShapeName().startsWith("Watermark")).count());
+            Assertions.assertEquals(5, slideShow.getSlides().get(2).getShapes().size());
+            Assertions.assertEquals("slide0", ((XSLFTextShape) slideShow.getSlides().get(0).getShapes().get(0)).getText());
+        }
+    }
+
+    /**
+     * 给 .ppt 文件的母版添加重复的图片水印
+     */
+    @Test
+    public void testSetMasterRepeatImageWatermarkForPpt() throws IOException {
+        ByteArrayOutputStream pptStream = new ByteArrayOutputStream();
+        try (HSLFSlideShow slideShow = new HSLFSlideShow()) {
+            for (int i = 0; i < 3; i++) {
+                slideShow.createSlide().createTextBox().setText("slide" + i);
+            }
+            slideShow.write(pptStream);
+        }
+
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(100, 40, BufferedImage.TYPE_INT_ARGB), "png", imageStream);
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setRows(2);
+        watermarkStyle.setCols(2);
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+        watermark.setWidth(100);
+        watermark.setHeight(40);
+        watermark.setStyle(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PPTWatermarkCreator watermarkCreator = new PPTWatermarkCreator()) {
+            watermarkCreator.create(new ByteArrayInputStream(pptStream.toByteArray()), outputStream, watermark);
+        }
+
+        try (HSLFSlideShow slideShow = new HSLFSlideShow(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(1, slideShow.getPictureData().size());
+            Assertions.assertEquals(4, slideShow.getSlideMasters().get(0).getShapes().stream()
+                    .filter(shape -> shape instanceof HSLFPictureShape).count());
+            Assertions.assertEquals(1, slideShow.getSlides().get(0).getShapes().size());
+        }
+    }
+
+    /*
+     * 给 3 张幻灯片（第 3 张隐藏母版图形）添加 2 行 2 列的图片水印
+     */
+    private ByteArrayOutputStream createWatermark(PPTWatermarkCreator.PlacementMode placementMode, boolean rawCopy) throws IOException {
+        ByteArrayOutputStream pptStream = new ByteArrayOutputStream();
+        try (XMLSlideShow slideShow = new XMLSlideShow()) {
+            for (int i = 0; i < 3; i++) {
+                XSLFSlide slide = slideShow.createSlide();
+                slide.createTextBox().setText("slide" + i);
+            }
+            slideShow.getSlides().get(2).setFollowMasterGraphics(false);
+            slideShow.write(pptStream);
+        }
+
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(100, 40, BufferedImage.TYPE_INT_ARGB), "png", imageStream);
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setRows(2);
+        watermarkStyle.setCols(2);
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+        watermark.setWidth(100);
+        watermark.setHeight(40);
+        watermark.setStyle(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PPTWatermarkCreator watermarkCreator = new PPTWatermarkCreator(placementMode)) {
+            watermarkCreator.setRawCopy(rawCopy);
+            watermarkCreator.create(new ByteArrayInputStream(pptStream.toByteArray()), outputStream, watermark);
+        }
+        return outputStream;
+    }
+
+}
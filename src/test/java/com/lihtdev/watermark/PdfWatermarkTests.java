@@ -1,11 +1,48 @@
 package com.lihtdev.watermark;
 
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.lihtdev.watermark.creator.WatermarkCreator;
+import com.lihtdev.watermark.creator.impl.PdfWatermarkCreator;
+import com.lihtdev.watermark.enums.FontEmbedding;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.model.*;
+import com.lihtdev.watermark.util.FontFileUtils;
+import com.lihtdev.watermark.util.FontUtils;
+import com.lihtdev.watermark.util.TextUtils;
 import com.lihtdev.watermark.util.WatermarkUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 给 PDF 添加水印的测试类
@@ -17,6 +54,12 @@ public class PdfWatermarkTests {
 
     private static final String BASE_PATH = "c:/temp/watermark/";
 
+    /**
+     * 查找系统字体的目录（在内存中测试时使用，不依赖测试文件目录）
+     */
+    private static final String[] SYSTEM_FONT_DIRECTORIES = {
+            "/usr/share/fonts", "C:/Windows/Fonts", "/System/Library/Fonts", "/Library/Fonts"};
+
     /**
      * 添加固定位置的文本水印
      */
@@ -65,6 +108,363 @@ public class PdfWatermarkTests {
 
     }
 
+    /**
+     * 添加重复的文本水印（水印单元只绘制一次）
+     */
+    @Test
+    public void testSetRepeatTileTextWatermark() throws IOException {
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+        watermarkStyle.setXSpace(50);
+        watermarkStyle.setYSpace(50);
+
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setFontFamily("楷体");
+        watermark.setColor("orange");
+        watermark.setStyle(watermarkStyle);
+
+        try (InputStream inputStream = new FileInputStream(BASE_PATH + "/pdf.pdf");
+             OutputStream outputStream = new FileOutputStream(BASE_PATH + "/repeat-tile-text-watermark.pdf");
+             WatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.TILE)) {
+            watermarkCreator.create(inputStream, outputStream, watermark);
+        }
+    }
+
+    /**
+     * 水印单元只绘制一次，每页的每个位置都引用同一个 Form XObject（在内存中创建 PDF 文件，使用标准中文字体）
+     */
+    @Test
+    public void testSetRepeatTileTextWatermarkInMemory() throws IOException {
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setStyle(new RepeatWatermarkStyle());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.TILE)) {
+            watermarkCreator.setFontEmbedding(FontEmbedding.REFERENCE);
+            watermarkCreator.create(new ByteArrayInputStream(createPdf(PageSize.A4, PageSize.A4, PageSize.A4)), outputStream, watermark);
+        }
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(outputStream.toByteArray())))) {
+            Set<PdfIndirectReference> watermarkTiles = new HashSet<>();
+            for (int pageNumber = 1; pageNumber <= pdfDoc.getNumberOfPages(); pageNumber++) {
+                Set<PdfIndirectReference> xObjects = getXObjects(pdfDoc.getPage(pageNumber));
+                Assertions.assertEquals(1, xObjects.size());
+                watermarkTiles.addAll(xObjects);
+            }
+            Assertions.assertEquals(1, watermarkTiles.size());
+        }
+    }
+
+    /**
+     * 添加重复的图片水印（整页水印网格只绘制一次，相同尺寸的页面共享）
+     */
+    @Test
+    public void testSetRepeatPageImageWatermark() throws IOException {
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setOpacity(0.5f);
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+        watermarkStyle.setXSpace(50);
+        watermarkStyle.setYSpace(50);
+
+        try (InputStream imageStream = new FileInputStream(BASE_PATH + "/watermark.png");
+             InputStream inputStream = new FileInputStream(BASE_PATH + "/pdf.pdf");
+             OutputStream outputStream = new FileOutputStream(BASE_PATH + "/repeat-page-image-watermark.pdf");
+             WatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.PAGE)) {
+
+            ImageWatermark watermark = new ImageWatermark(imageStream);
+            watermark.setWidth(230);
+            watermark.setHeight(68);
+            watermark.setStyle(watermarkStyle);
+
+            watermarkCreator.create(inputStream, outputStream, watermark);
+        }
+    }
+
+    /**
+     * 相同尺寸的页面共享同一个整页水印（在内存中创建 PDF 文件）
+     */
+    @Test
+    public void testSetRepeatPageImageWatermarkInMemory() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.PAGE)) {
+            watermarkCreator.create(new ByteArrayInputStream(createPdf(PageSize.A4, PageSize.A3, PageSize.A4)),
+                    outputStream, createImageWatermark(new RepeatWatermarkStyle()));
+        }
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(outputStream.toByteArray())))) {
+            Set<PdfIndirectReference> pageWatermarks = new HashSet<>();
+            for (int pageNumber = 1; pageNumber <= pdfDoc.getNumberOfPages(); pageNumber++) {
+                Set<PdfIndirectReference> xObjects = getXObjects(pdfDoc.getPage(pageNumber));
+                Assertions.assertEquals(1, xObjects.size());
+                pageWatermarks.addAll(xObjects);
+            }
+            Assertions.assertEquals(2, pageWatermarks.size());
+            Assertions.assertEquals(getXObjects(pdfDoc.getPage(1)), getXObjects(pdfDoc.getPage(3)));
+        }
+    }
+
+    /**
+     * 流式添加重复的文本水印（每页添加水印后立即写出）
+     */
+    @Test
+    public void testSetStreamingRepeatTextWatermark() throws IOException {
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setColor("orange");
+        watermark.setStyle(watermarkStyle);
+
+        PageSize[] pageSizes = new PageSize[20];
+        Arrays.fill(pageSizes, PageSize.A4);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.TILE)) {
+            watermarkCreator.setFontEmbedding(FontEmbedding.REFERENCE);
+            watermarkCreator.setStreaming(true);
+            watermarkCreator.create(new ByteArrayInputStream(createPdf(pageSizes)), outputStream, watermark);
+            Assertions.assertTrue(watermarkCreator.getMaxSampledHeapUsage() > 0);
+        }
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(outputStream.toByteArray())))) {
+            Assertions.assertEquals(pageSizes.length, pdfDoc.getNumberOfPages());
+            for (int pageNumber = 1; pageNumber <= pdfDoc.getNumberOfPages(); pageNumber++) {
+                Assertions.assertEquals(1, getXObjects(pdfDoc.getPage(pageNumber)).size());
+            }
+        }
+    }
+
+    /**
+     * 给本地 PDF 文件添加重复的文本水印（内存映射读取）
+     */
+    @Test
+    public void testSetRepeatTextWatermarkFromPath() throws IOException {
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setFontFamily("楷体");
+        watermark.setColor("orange");
+        watermark.setStyle(watermarkStyle);
+
+        try (OutputStream outputStream = new FileOutputStream(BASE_PATH + "/path-text-watermark.pdf")) {
+            WatermarkUtils.setWatermarkForPdf(Paths.get(BASE_PATH, "pdf.pdf"), outputStream, watermark);
+        }
+    }
+
+    /**
+     * 通过文件路径和文件通道给本地 PDF 文件添加水印（PDF 文件在临时目录中创建）
+     */
+    @Test
+    public void testSetRepeatImageWatermarkFromPathAndChannel(@TempDir Path tempDir) throws IOException {
+        Path pdfPath = tempDir.resolve("pdf.pdf");
+        Files.write(pdfPath, createPdf(PageSize.A4, PageSize.A4));
+
+        ByteArrayOutputStream pathOutputStream = new ByteArrayOutputStream();
+        try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.PAGE)) {
+            watermarkCreator.create(pdfPath, pathOutputStream, createImageWatermark(new RepeatWatermarkStyle()));
+        }
+        ByteArrayOutputStream channelOutputStream = new ByteArrayOutputStream();
+        try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.PAGE)) {
+            watermarkCreator.create(FileChannel.open(pdfPath, StandardOpenOption.READ), channelOutputStream,
+                    createImageWatermark(new RepeatWatermarkStyle()));
+        }
+
+        for (ByteArrayOutputStream outputStream : Arrays.asList(pathOutputStream, channelOutputStream)) {
+            try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(outputStream.toByteArray())))) {
+                Assertions.assertEquals(2, pdfDoc.getNumberOfPages());
+                Assertions.assertEquals(1, getXObjects(pdfDoc.getPage(2)).size());
+            }
+        }
+    }
+
+    /**
+     * 按页面范围并行、流式添加重复的文本水印（范围比线程数多，逐个提交）
+     */
+    @Test
+    public void testSetParallelRepeatTextWatermark() throws IOException {
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setColor("orange");
+        watermark.setStyle(watermarkStyle);
+
+        PageSize[] pageSizes = new PageSize[7];
+        Arrays.fill(pageSizes, PageSize.A4);
+        pageSizes[3] = PageSize.A3;
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+        try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator(PdfWatermarkCreator.RepeatMode.TILE)) {
+            watermarkCreator.setFontEmbedding(FontEmbedding.REFERENCE);
+            watermarkCreator.setParallel(true);
+            watermarkCreator.setParallelThreshold(1);
+            watermarkCreator.setParallelRangeSize(2);
+            watermarkCreator.setStreaming(true);
+            watermarkCreator.setForkJoinPool(forkJoinPool);
+            watermarkCreator.create(new ByteArrayInputStream(createPdf(pageSizes)), outputStream, watermark);
+        } finally {
+            forkJoinPool.shutdown();
+        }
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(outputStream.toByteArray())))) {
+            Assertions.assertEquals(pageSizes.length, pdfDoc.getNumberOfPages());
+            for (int pageNumber = 1; pageNumber <= pdfDoc.getNumberOfPages(); pageNumber++) {
+                Assertions.assertEquals(1, getXObjects(pdfDoc.getPage(pageNumber)).size());
+                Assertions.assertEquals(pageSizes[pageNumber - 1].getWidth(), pdfDoc.getPage(pageNumber).getPageSize().getWidth());
+            }
+        }
+    }
+
+    /**
+     * 多次添加文本水印，字体程序只加载一次（第二次命中缓存）
+     */
+    @Test
+    public void testFontProgramCache(@TempDir Path tempDir) throws IOException {
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("watermark");
+        watermark.setFontFamily(registerSystemFont(tempDir));
+        byte[] pdf = createPdf(PageSize.A4);
+
+        for (int i = 0; i < 2; i++) {
+            long hits = FontUtils.getFontProgramCacheHits();
+            long misses = FontUtils.getFontProgramCacheMisses();
+            try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator()) {
+                watermarkCreator.create(new ByteArrayInputStream(pdf), new ByteArrayOutputStream(), watermark);
+            }
+            if (i == 0) {
+                Assertions.assertEquals(misses + 1, FontUtils.getFontProgramCacheMisses());
+            } else {
+                Assertions.assertEquals(hits + 1, FontUtils.getFontProgramCacheHits());
+                Assertions.assertEquals(misses, FontUtils.getFontProgramCacheMisses());
+            }
+        }
+    }
+
+    /**
+     * TTC 文件中第二个字体加载为 Java 字体时，不会被当作第一个字体
+     */
+    @Test
+    public void testRegisterTtcFontFile(@TempDir Path tempDir) throws IOException {
+        List<Path> fontPaths = new ArrayList<>();
+        Set<String> fullNames = new HashSet<>();
+        for (Path fontPath : findSystemFonts()) {
+            if (fontPaths.size() < 2 && fullNames.addAll(FontFileUtils.getFullNames(fontPath).get(0))) {
+                fontPaths.add(fontPath);
+            }
+        }
+        Assumptions.assumeTrue(fontPaths.size() == 2, "没有找到两个不同的系统字体");
+        Path ttcPath = createTtc(tempDir.resolve("fonts.ttc"), fontPaths.get(0), fontPaths.get(1));
+
+        Assertions.assertTrue(FontUtils.registerFontDirectory(tempDir).isEmpty());
+        List<Set<String>> ttcNames = FontFileUtils.getFullNames(ttcPath);
+        for (int ttcIndex = 0; ttcIndex < 2; ttcIndex++) {
+            String fontName = ttcNames.get(ttcIndex).iterator().next();
+            Font font = FontUtils.getFont(fontName, Font.PLAIN, 12);
+            Assertions.assertTrue(ttcNames.get(ttcIndex).contains(font.getFontName(Locale.ENGLISH)), font.getFontName());
+        }
+    }
+
+    /**
+     * 格式错误的字体文件不会注册，并返回失败原因（字体数量、表数量超出文件时不会分配过大的内存）
+     */
+    @Test
+    public void testRegisterBrokenFontFile(@TempDir Path tempDir) throws IOException {
+        ByteBuffer ttc = ByteBuffer.allocate(16).putInt(0x74746366).putInt(0x00010000).putInt(Integer.MAX_VALUE);
+        ByteBuffer ttf = ByteBuffer.allocate(16).putInt(0x00010000).putShort((short) 0xFFFF);
+        Path ttcPath = Files.write(tempDir.resolve("broken.ttc"), ttc.array());
+        Path ttfPath = Files.write(tempDir.resolve("broken.ttf"), ttf.array());
+
+        Map<Path, Exception> failures = FontUtils.registerFontDirectory(tempDir);
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(ttcPath, ttfPath)), failures.keySet());
+        for (Exception e : failures.values()) {
+            Assertions.assertTrue(e instanceof IOException, e.toString());
+        }
+    }
+
+    /**
+     * 不同字体嵌入方式的字体字典和输出文件大小（不嵌入 < 嵌入子集 < 嵌入完整字体）
+     */
+    @Test
+    public void testFontEmbedding(@TempDir Path tempDir) throws IOException {
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("watermark");
+        watermark.setFontFamily(registerSystemFont(tempDir));
+        byte[] pdf = createPdf(PageSize.A4);
+
+        Map<FontEmbedding, Integer> sizes = new EnumMap<>(FontEmbedding.class);
+        for (FontEmbedding fontEmbedding : FontEmbedding.values()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try (PdfWatermarkCreator watermarkCreator = new PdfWatermarkCreator()) {
+                watermarkCreator.setFontEmbedding(fontEmbedding);
+                watermarkCreator.create(new ByteArrayInputStream(pdf), outputStream, watermark);
+            }
+            sizes.put(fontEmbedding, outputStream.size());
+
+            try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(new ByteArrayInputStream(outputStream.toByteArray())))) {
+                PdfDictionary font = getType0Font(pdfDoc);
+                PdfDictionary fontDescriptor = font.getAsArray(PdfName.DescendantFonts).getAsDictionary(0)
+                        .getAsDictionary(PdfName.FontDescriptor);
+                String baseFont = font.getAsName(PdfName.BaseFont).getValue();
+                Assertions.assertEquals(fontEmbedding != FontEmbedding.REFERENCE, fontDescriptor.containsKey(PdfName.FontFile2), fontEmbedding.name());
+                Assertions.assertEquals(fontEmbedding == FontEmbedding.SUBSET, baseFont.matches("[A-Z]{6}\\+.*"), baseFont);
+            }
+        }
+        Assertions.assertTrue(sizes.get(FontEmbedding.REFERENCE) < sizes.get(FontEmbedding.SUBSET), sizes.toString());
+        Assertions.assertTrue(sizes.get(FontEmbedding.SUBSET) < sizes.get(FontEmbedding.FULL), sizes.toString());
+    }
+
+    /**
+     * 按字体度量计算的文本尺寸与 FontMetrics、PdfFont 一致（返回的数组可以修改，同一字体程序的不同编码分别缓存）
+     */
+    @Test
+    public void testTextSize() throws IOException, FontFormatException {
+        List<Path> fontPaths = findSystemFonts();
+        Assumptions.assumeTrue(!fontPaths.isEmpty(), "没有找到系统字体");
+        String text = "Ωatermark";
+
+        Font font = Font.createFont(Font.TRUETYPE_FONT, fontPaths.get(0).toFile()).deriveFont(Font.PLAIN, 24f);
+        Graphics2D graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        FontMetrics fontMetrics = graphics.getFontMetrics(font);
+        graphics.dispose();
+        int[] textSize = TextUtils.getTextWidthAndHeight(font, text);
+        Assertions.assertEquals(fontMetrics.stringWidth(text), textSize[0], 1);
+        textSize[0] = 0;
+        Assertions.assertEquals(fontMetrics.stringWidth(text), TextUtils.getTextWidthAndHeight(font, text)[0], 1);
+        Assertions.assertEquals(fontMetrics.stringWidth(text), TextUtils.getTextWidth(font, text), 1);
+        Assertions.assertEquals(TextUtils.getTextWidthAndHeight(font, text)[1], TextUtils.getTextHeight(font, text));
+
+        FontProgram fontProgram = FontProgramFactory.createFont(fontPaths.get(0).toString());
+        PdfFont identityFont = PdfFontFactory.createFont(fontProgram, PdfEncodings.IDENTITY_H);
+        PdfFont winAnsiFont = PdfFontFactory.createFont(fontProgram, PdfEncodings.WINANSI);
+        Assertions.assertNotEquals(identityFont.getWidth(text, 12), winAnsiFont.getWidth(text, 12));
+        for (PdfFont pdfFont : new PdfFont[]{identityFont, winAnsiFont}) {
+            Assertions.assertEquals(pdfFont.getWidth(text, 12), TextUtils.getTextWidth(pdfFont, 12, text), 0.001f);
+        }
+    }
+
+    /**
+     * 使用外部字体目录中的字体添加水印
+     */
+    @Test
+    public void testSetExternalFontTextWatermark() throws IOException {
+        FontUtils.registerFontDirectory(Paths.get(BASE_PATH + "/fonts"));
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setFontFamily("Microsoft YaHei");
+
+        try (InputStream inputStream = new FileInputStream(BASE_PATH + "/pdf.pdf");
+             OutputStream outputStream = new FileOutputStream(BASE_PATH + "/external-font-watermark.pdf")) {
+            WatermarkUtils.setWatermarkForPdf(inputStream, outputStream, watermark);
+        }
+    }
+
     /**
      * 添加固定位置的图片水印
      */
@@ -148,4 +548,126 @@ public class PdfWatermarkTests {
         }
     }
 
+    /*
+     * 创建 100 x 40 的图片水印
+     */
+    private ImageWatermark createImageWatermark(WatermarkStyle watermarkStyle) throws IOException {
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(100, 40, BufferedImage.TYPE_INT_ARGB), "png", imageStream);
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+        watermark.setWidth(100);
+        watermark.setHeight(40);
+        watermark.setStyle(watermarkStyle);
+        return watermark;
+    }
+
+    /*
+     * 将系统中的一个 TrueType 字体复制到临时目录并注册，返回字体全名；没有找到系统字体时跳过测试
+     */
+    private String registerSystemFont(Path tempDir) throws IOException {
+        List<Path> fontPaths = findSystemFonts();
+        Assumptions.assumeTrue(!fontPaths.isEmpty(), "没有找到系统字体");
+        Path fontPath = fontPaths.get(0);
+        Path fontCopy = Files.copy(fontPath, tempDir.resolve(fontPath.getFileName()));
+        FontUtils.registerFontDirectory(tempDir);
+        return FontFileUtils.getFullNames(fontCopy).get(0).iterator().next();
+    }
+
+    /*
+     * 查找系统中的 TrueType 字体文件（按文件名排序）
+     */
+    private List<Path> findSystemFonts() throws IOException {
+        for (String fontDirectory : SYSTEM_FONT_DIRECTORIES) {
+            Path directory = Paths.get(fontDirectory);
+            if (Files.isDirectory(directory)) {
+                try (Stream<Path> paths = Files.walk(directory)) {
+                    List<Path> fontPaths = paths.filter(path -> path.getFileName().toString().toLowerCase().endsWith(".ttf"))
+                            .sorted().collect(Collectors.toList());
+                    if (!fontPaths.isEmpty()) {
+                        return fontPaths;
+                    }
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /*
+     * 将多个 TTF 文件合并为 TTC 文件（每个字体的数据原样复制，只修改表目录中的偏移量）
+     */
+    private Path createTtc(Path ttcPath, Path... fontPaths) throws IOException {
+        byte[][] fonts = new byte[fontPaths.length][];
+        int dataOffset = 12 + fontPaths.length * 4;
+        for (int i = 0; i < fontPaths.length; i++) {
+            fonts[i] = Files.readAllBytes(fontPaths[i]);
+            dataOffset += 12 + (ByteBuffer.wrap(fonts[i]).getShort(4) & 0xFFFF) * 16;
+        }
+        ByteArrayOutputStream ttc = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(12 + fontPaths.length * 4).putInt(0x74746366).putInt(0x00010000).putInt(fonts.length);
+        int directoryOffset = header.capacity();
+        for (byte[] font : fonts) {
+            int numTables = ByteBuffer.wrap(font).getShort(4) & 0xFFFF;
+            ByteBuffer directory = ByteBuffer.wrap(Arrays.copyOf(font, 12 + numTables * 16));
+            for (int i = 0; i < numTables; i++) {
+                directory.putInt(12 + i * 16 + 8, dataOffset + data.size() + directory.getInt(12 + i * 16 + 8));
+            }
+            header.putInt(directoryOffset);
+            ttc.write(directory.array());
+            directoryOffset += directory.capacity();
+            data.write(font);
+            // 每个字体的数据按 4 字节对齐
+            data.write(new byte[(4 - font.length % 4) % 4]);
+        }
+        try (OutputStream outputStream = Files.newOutputStream(ttcPath)) {
+            outputStream.write(header.array());
+            ttc.writeTo(outputStream);
+            data.writeTo(outputStream);
+        }
+        return ttcPath;
+    }
+
+    /*
+     * 在内存中创建 PDF 文件（只包含指定尺寸的空白页面）
+     */
+    private byte[] createPdf(PageSize... pageSizes) {
+        ByteArrayOutputStream pdfStream = new ByteArrayOutputStream();
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(pdfStream))) {
+            for (PageSize pageSize : pageSizes) {
+                pdfDoc.addNewPage(pageSize);
+            }
+        }
+        return pdfStream.toByteArray();
+    }
+
+    /*
+     * 获取文档中唯一的 Type0 字体（水印文本使用的字体）
+     */
+    private PdfDictionary getType0Font(PdfDocument pdfDoc) {
+        PdfDictionary type0Font = null;
+        for (int i = 1; i < pdfDoc.getNumberOfPdfObjects(); i++) {
+            PdfObject pdfObject = pdfDoc.getPdfObject(i);
+            if (pdfObject instanceof PdfDictionary && PdfName.Type0.equals(((PdfDictionary) pdfObject).getAsName(PdfName.Subtype))) {
+                Assertions.assertNull(type0Font, "文档中有多个 Type0 字体");
+                type0Font = (PdfDictionary) pdfObject;
+            }
+        }
+        Assertions.assertNotNull(type0Font, "文档中没有 Type0 字体");
+        return type0Font;
+    }
+
+    /*
+     * 获取页面引用的 Form XObject 和图片 XObject
+     */
+    private Set<PdfIndirectReference> getXObjects(PdfPage pdfPage) {
+        Set<PdfIndirectReference> xObjects = new HashSet<>();
+        PdfDictionary xObjectDictionary = pdfPage.getResources().getResource(PdfName.XObject);
+        if (xObjectDictionary != null) {
+            for (PdfName name : xObjectDictionary.keySet()) {
+                xObjects.add(xObjectDictionary.get(name).getIndirectReference());
+            }
+        }
+        return xObjects;
+    }
+
 }
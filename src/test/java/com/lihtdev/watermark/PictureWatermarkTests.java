@@ -1,12 +1,23 @@
 package com.lihtdev.watermark;
 
+import com.lihtdev.watermark.creator.impl.PictureWatermarkCreator;
 import com.lihtdev.watermark.enums.ChineseFont;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.model.*;
+import com.lihtdev.watermark.util.RasterBlender;
+import com.lihtdev.watermark.util.SpriteCache;
 import com.lihtdev.watermark.util.WatermarkUtils;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 import java.io.*;
+import java.util.Random;
 
 /**
  * 给图片添加水印的测试类
@@ -147,4 +158,316 @@ public class PictureWatermarkTests {
         }
     }
 
+    /**
+     * 水印直接绘制在原图片上，图片尺寸和水印以外的像素不变
+     */
+    @Test
+    public void testSetPositionImageWatermarkInMemory() throws IOException {
+        BufferedImage picture = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = picture.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 400, 300);
+        g.dispose();
+        ByteArrayOutputStream pictureStream = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", pictureStream);
+
+        BufferedImage watermarkImage = new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB);
+        g = watermarkImage.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 50, 50);
+        g.dispose();
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(watermarkImage, "png", imageStream);
+
+        PositionWatermarkStyle watermarkStyle = new PositionWatermarkStyle();
+        watermarkStyle.setPositions(new PositionWatermarkStyle.Position[]{PositionWatermarkStyle.Position.CENTER});
+        watermarkStyle.setFormat(WatermarkStyle.Format.HORIZONTAL);
+        watermarkStyle.setOpacity(1f);
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+        watermark.setWidth(50);
+        watermark.setHeight(50);
+        watermark.setStyle(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        WatermarkUtils.setWatermarkForPicture(new ByteArrayInputStream(pictureStream.toByteArray()), outputStream, watermark);
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        Assertions.assertEquals(400, result.getWidth());
+        Assertions.assertEquals(300, result.getHeight());
+        Assertions.assertEquals(Color.RED.getRGB(), result.getRGB(200, 150));
+        Assertions.assertEquals(Color.WHITE.getRGB(), result.getRGB(10, 10));
+    }
+
+    /**
+     * 默认按原图片的格式输出，PNG 图片保留透明度
+     */
+    @Test
+    public void testKeepSourceFormat() throws IOException {
+        BufferedImage picture = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = picture.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(100, 0, 300, 300);
+        g.dispose();
+        ByteArrayOutputStream pngStream = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", pngStream);
+        ByteArrayOutputStream jpegStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "jpeg", jpegStream);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PictureWatermarkCreator watermarkCreator = new PictureWatermarkCreator()) {
+            watermarkCreator.create(new ByteArrayInputStream(pngStream.toByteArray()), outputStream, createImageWatermark());
+        }
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        Assertions.assertTrue(result.getColorModel().hasAlpha());
+        Assertions.assertEquals(0, result.getRGB(10, 10) >>> 24);
+        Assertions.assertEquals(Color.WHITE.getRGB(), result.getRGB(390, 290));
+
+        outputStream = new ByteArrayOutputStream();
+        try (PictureWatermarkCreator watermarkCreator = new PictureWatermarkCreator()) {
+            watermarkCreator.setCompressionQuality(0.5f);
+            watermarkCreator.setProgressive(true);
+            watermarkCreator.create(new ByteArrayInputStream(jpegStream.toByteArray()), outputStream, createImageWatermark());
+        }
+        Assertions.assertEquals("jpeg", getFormatName(outputStream.toByteArray()));
+
+        outputStream = new ByteArrayOutputStream();
+        try (PictureWatermarkCreator watermarkCreator = new PictureWatermarkCreator()) {
+            watermarkCreator.setOutputFormat("png");
+            watermarkCreator.create(new ByteArrayInputStream(jpegStream.toByteArray()), outputStream, createImageWatermark());
+        }
+        Assertions.assertEquals("png", getFormatName(outputStream.toByteArray()));
+    }
+
+    /**
+     * 分条处理与整张图片处理的结果一致
+     */
+    @Test
+    public void testSetRepeatImageWatermarkByStripes() throws IOException {
+        BufferedImage picture = new BufferedImage(300, 1000, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(0);
+        for (int x = 0; x < picture.getWidth(); x++) {
+            for (int y = 0; y < picture.getHeight(); y++) {
+                picture.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream pictureStream = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", pictureStream);
+
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(60, 30, BufferedImage.TYPE_INT_RGB), "png", imageStream);
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+        watermarkStyle.setXSpace(40);
+        watermarkStyle.setYSpace(40);
+
+        BufferedImage[] results = new BufferedImage[2];
+        for (int i = 0; i < results.length; i++) {
+            ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+            watermark.setWidth(60);
+            watermark.setHeight(30);
+            watermark.setStyle(watermarkStyle);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try (PictureWatermarkCreator watermarkCreator = new PictureWatermarkCreator()) {
+                watermarkCreator.setStripeHeight(i == 0 ? 0 : 64);
+                watermarkCreator.create(new ByteArrayInputStream(pictureStream.toByteArray()), outputStream, watermark);
+            }
+            Assertions.assertEquals("png", getFormatName(outputStream.toByteArray()));
+            results[i] = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+        }
+
+        Assertions.assertTrue(results[1].getColorModel().hasAlpha());
+        for (int x = 0; x < picture.getWidth(); x++) {
+            for (int y = 0; y < picture.getHeight(); y++) {
+                Assertions.assertEquals(results[0].getRGB(x, y), results[1].getRGB(x, y), "x=" + x + ", y=" + y);
+            }
+        }
+    }
+
+    /**
+     * 相同的水印复用缓存的精灵图，添加水印的结果与重新绘制精灵图时一致
+     */
+    @Test
+    public void testSpriteCache() throws IOException {
+        ByteArrayOutputStream pictureStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), "png", pictureStream);
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        BufferedImage image = new BufferedImage(60, 30, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillOval(0, 0, 60, 30);
+        graphics.dispose();
+        ImageIO.write(image, "png", imageStream);
+
+        long maxBytes = SpriteCache.getMaxBytes();
+        byte[][] results = new byte[3][];
+        try {
+            Object key = new Object();
+            SpriteCache.Sprite sprite = SpriteCache.get(key, () -> SpriteCache.render(new Rectangle(0, 0, 10, 10), 0, 1f, g -> g.fillRect(0, 0, 10, 10)));
+            Assertions.assertSame(sprite, SpriteCache.get(key, () -> null));
+
+            for (int i = 0; i < results.length; i++) {
+                if (i == 2) {
+                    // 内存上限为 0 时不缓存，每次重新绘制精灵图
+                    SpriteCache.setMaxBytes(0);
+                    Assertions.assertNotSame(sprite, SpriteCache.get(key, () -> SpriteCache.render(new Rectangle(0, 0, 10, 10), 0, 1f, g -> g.fillRect(0, 0, 10, 10))));
+                }
+                ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+                watermark.setWidth(60);
+                watermark.setHeight(30);
+                RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+                watermarkStyle.setFormat(WatermarkStyle.Format.OBLIQUE);
+                watermark.setStyle(watermarkStyle);
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try (PictureWatermarkCreator watermarkCreator = new PictureWatermarkCreator()) {
+                    watermarkCreator.create(new ByteArrayInputStream(pictureStream.toByteArray()), outputStream, watermark);
+                }
+                results[i] = outputStream.toByteArray();
+            }
+        } finally {
+            // 恢复原来的内存上限，不在全局缓存中留下测试用的精灵图
+            SpriteCache.setMaxBytes(maxBytes);
+            SpriteCache.clear();
+        }
+
+        Assertions.assertArrayEquals(results[0], results[1]);
+        Assertions.assertArrayEquals(results[0], results[2]);
+    }
+
+    /**
+     * 直接混合像素数组的结果与 Graphics2D 的 SRC_ATOP 一致（默认的倾斜重复水印，水印之间有重叠）：
+     * 透明度不变，每个分量误差不超过 1（未预乘透明度的图片仍使用 Graphics2D）
+     */
+    @Test
+    public void testDirectBlend() throws IOException {
+        Random random = new Random(0);
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        BufferedImage image = new BufferedImage(60, 30, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ImageIO.write(image, "png", imageStream);
+
+        // 解码后分别为 4BYTE_ABGR、3BYTE_BGR，灰度图片和带透明度的索引颜色图片转换为 INT_RGB、INT_ARGB
+        int[] pictureTypes = {BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+        for (int pictureType : pictureTypes) {
+            ByteArrayOutputStream pictureStream = new ByteArrayOutputStream();
+            ImageIO.write(createRandomPicture(pictureType, 300, 200, random), "png", pictureStream);
+
+            BufferedImage[] results = new BufferedImage[2];
+            for (int i = 0; i < results.length; i++) {
+                ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+                watermark.setWidth(60);
+                watermark.setHeight(30);
+                watermark.setStyle(new RepeatWatermarkStyle());
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try (PictureWatermarkCreator watermarkCreator = new PictureWatermarkCreator()) {
+                    watermarkCreator.setDirectBlend(i == 1);
+                    watermarkCreator.create(new ByteArrayInputStream(pictureStream.toByteArray()), outputStream, watermark);
+                }
+                results[i] = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+            }
+
+            for (int x = 0; x < results[0].getWidth(); x++) {
+                for (int y = 0; y < results[0].getHeight(); y++) {
+                    int expected = results[0].getRGB(x, y);
+                    int actual = results[1].getRGB(x, y);
+                    String message = "type=" + pictureType + ", x=" + x + ", y=" + y;
+                    Assertions.assertEquals(expected >>> 24, actual >>> 24, message);
+                    for (int shift = 0; shift < 24; shift += 8) {
+                        Assertions.assertEquals(expected >> shift & 0xFF, actual >> shift & 0xFF, 1, message);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 预乘透明度的图片直接混合与 Graphics2D 的 SRC_ATOP 一致（比较预乘后存储的分量，误差不超过 1），未预乘透明度的图片不支持直接混合
+     */
+    @Test
+    public void testDirectBlendPremultiplied() {
+        Assertions.assertFalse(RasterBlender.isSupported(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)));
+        Assertions.assertFalse(RasterBlender.isSupported(new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR)));
+
+        SpriteCache.Sprite sprite = SpriteCache.render(new Rectangle(0, -20, 160, 28), Math.toRadians(-45), 0.3f, g -> {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.RED);
+            g.fill(new RoundRectangle2D.Double(0, -20, 160, 28, 12, 12));
+        });
+        Random random = new Random(0);
+        int[] pictureTypes = {BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_4BYTE_ABGR_PRE};
+        for (int pictureType : pictureTypes) {
+            BufferedImage expected = createRandomPicture(pictureType, 300, 200, random);
+            BufferedImage actual = new BufferedImage(expected.getColorModel(), expected.copyData(null), true, null);
+            Assertions.assertTrue(RasterBlender.isSupported(actual));
+
+            Graphics2D g = expected.createGraphics();
+            g.setComposite(AlphaComposite.SrcAtop);
+            for (int x = -100; x < expected.getWidth(); x += 70) {
+                for (int y = -100; y < expected.getHeight(); y += 50) {
+                    g.drawImage(sprite.getImage(), x, y, null);
+                    RasterBlender.blendSrcAtop(actual, sprite.getImage(), x, y);
+                }
+            }
+            g.dispose();
+
+            int[] expectedSamples = expected.getRaster().getPixels(0, 0, expected.getWidth(), expected.getHeight(), (int[]) null);
+            int[] actualSamples = actual.getRaster().getPixels(0, 0, actual.getWidth(), actual.getHeight(), (int[]) null);
+            for (int i = 0; i < expectedSamples.length; i++) {
+                Assertions.assertEquals(expectedSamples[i], actualSamples[i], 1, "type=" + pictureType + ", i=" + i);
+            }
+        }
+    }
+
+    /*
+     * 创建随机像素的图片（索引颜色图片的调色板带透明度）
+     */
+    private BufferedImage createRandomPicture(int type, int width, int height, Random random) {
+        BufferedImage picture;
+        if (type == BufferedImage.TYPE_BYTE_INDEXED) {
+            byte[][] palette = new byte[4][256];
+            for (byte[] component : palette) {
+                random.nextBytes(component);
+            }
+            picture = new BufferedImage(width, height, type,
+                    new IndexColorModel(8, 256, palette[0], palette[1], palette[2], palette[3]));
+        } else {
+            picture = new BufferedImage(width, height, type);
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                picture.setRGB(x, y, random.nextInt());
+            }
+        }
+        return picture;
+    }
+
+    /*
+     * 创建右下角的图片水印
+     */
+    private ImageWatermark createImageWatermark() throws IOException {
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB), "png", imageStream);
+        PositionWatermarkStyle watermarkStyle = new PositionWatermarkStyle();
+        watermarkStyle.setPositions(new PositionWatermarkStyle.Position[]{PositionWatermarkStyle.Position.RIGHT_BOTTOM});
+        watermarkStyle.setFormat(WatermarkStyle.Format.HORIZONTAL);
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(imageStream.toByteArray()));
+        watermark.setWidth(50);
+        watermark.setHeight(50);
+        watermark.setStyle(watermarkStyle);
+        return watermark;
+    }
+
+    /*
+     * 获取图片的格式名称
+     */
+    private String getFormatName(byte[] image) throws IOException {
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            return ImageIO.getImageReaders(imageInputStream).next().getFormatName().toLowerCase();
+        }
+    }
+
 }
@@ -0,0 +1,121 @@
+package com.lihtdev.watermark;
+
+import com.lihtdev.watermark.util.RasterBlender;
+import com.lihtdev.watermark.util.SpriteCache;
+
+import java.awt.*;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 直接混合像素数组与 Graphics2D SRC_ATOP 的性能对比（不是单元测试，手动运行 main 方法）
+ * <p>
+ * 在 4K 和 2400 万像素的图片上按默认的倾斜重复水印间距复制旋转后的精灵图，每种图片类型先预热再计时，输出每次混合耗时的中位数；
+ * 只计时混合本身，不包括解码、编码和绘制精灵图；未预乘透明度的图片不支持直接混合，只对比预乘透明度的类型
+ * <p>
+ * 运行：mvn test-compile 后以测试类路径执行 com.lihtdev.watermark.RasterBlenderBenchmark [预热次数] [计时次数]
+ *
+ * @author lihaitao
+ * @since 2020/7/22
+ */
+public class RasterBlenderBenchmark {
+
+    private static final int[][] IMAGE_SIZES = {{3840, 2160}, {6000, 4000}};
+
+    private static final int[] IMAGE_TYPES = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR_PRE};
+
+    private static final String[] IMAGE_TYPE_NAMES = {"INT_RGB", "INT_ARGB_PRE", "3BYTE_BGR", "4BYTE_ABGR_PRE"};
+
+    /**
+     * 水印的水平和垂直间距
+     */
+    private static final int X_PITCH = 200;
+
+    private static final int Y_PITCH = 150;
+
+    public static void main(String[] args) {
+        int warmups = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        SpriteCache.Sprite sprite = SpriteCache.render(new Rectangle(0, -20, 160, 28), Math.toRadians(-45), 0.3f, g -> {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.RED);
+            g.fill(new RoundRectangle2D.Double(0, -20, 160, 28, 12, 12));
+        });
+
+        Random random = new Random(0);
+        for (int[] size : IMAGE_SIZES) {
+            for (int i = 0; i < IMAGE_TYPES.length; i++) {
+                BufferedImage source = createRandomImage(size[0], size[1], IMAGE_TYPES[i], random);
+                long graphics = median(warmups, iterations, source, image -> {
+                    Graphics2D g = image.createGraphics();
+                    g.setComposite(image.getColorModel().hasAlpha() ? AlphaComposite.SrcAtop : AlphaComposite.SrcOver);
+                    drawGrid(image, sprite, (x, y) -> g.drawImage(sprite.getImage(), x, y, null));
+                    g.dispose();
+                });
+                long direct = median(warmups, iterations, source,
+                        image -> drawGrid(image, sprite, (x, y) -> RasterBlender.blendSrcAtop(image, sprite.getImage(), x, y)));
+                System.out.printf("%dx%d %-14s Graphics2D %6.1f ms, direct %6.1f ms%n",
+                        size[0], size[1], IMAGE_TYPE_NAMES[i], graphics / 1e6, direct / 1e6);
+            }
+        }
+    }
+
+    /*
+     * 预热后计时，每次在原图片的副本上混合，返回耗时的中位数（纳秒）
+     */
+    private static long median(int warmups, int iterations, BufferedImage source, Blend blend) {
+        long[] times = new long[iterations];
+        for (int i = -warmups; i < iterations; i++) {
+            BufferedImage image = copyImage(source);
+            long start = System.nanoTime();
+            blend.apply(image);
+            long time = System.nanoTime() - start;
+            if (i >= 0) {
+                times[i] = time;
+            }
+        }
+        Arrays.sort(times);
+        return times[iterations / 2];
+    }
+
+    /*
+     * 按间距在整张图片上复制精灵图，相邻的行错开半个间距
+     */
+    private static void drawGrid(BufferedImage image, SpriteCache.Sprite sprite, Stamp stamp) {
+        for (int row = 0, y = 0; y < image.getHeight() + Y_PITCH; row++, y += Y_PITCH) {
+            for (int x = row % 2 == 0 ? 0 : -X_PITCH / 2; x < image.getWidth() + X_PITCH; x += X_PITCH) {
+                Rectangle bounds = sprite.getBounds(x, y);
+                stamp.apply(bounds.x, bounds.y);
+            }
+        }
+    }
+
+    private static BufferedImage createRandomImage(int width, int height, int type, Random random) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = random.nextInt();
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    private static BufferedImage copyImage(BufferedImage source) {
+        // 按颜色模型和光栅创建时仍识别为原图片的类型
+        return new BufferedImage(source.getColorModel(), source.copyData(null), source.isAlphaPremultiplied(), null);
+    }
+
+    private interface Blend {
+        void apply(BufferedImage image);
+    }
+
+    private interface Stamp {
+        void apply(int x, int y);
+    }
+
+}
@@ -1,11 +1,37 @@
 package com.lihtdev.watermark;
 
+import cn.hutool.core.io.IoUtil;
+import com.lihtdev.watermark.creator.impl.WordLayerWatermarkCreator;
+import com.lihtdev.watermark.creator.impl.WordWatermarkCreator;
+import com.lihtdev.watermark.exception.WatermarkException;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.model.*;
 import com.lihtdev.watermark.util.WatermarkUtils;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.Units;
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.BreakType;
+import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTNonVisualDrawingProps;
+import org.openxmlformats.schemas.drawingml.x2006.wordprocessingDrawing.CTAnchor;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 
 /**
  * 给 Word 文件添加水印测试类
@@ -113,4 +139,228 @@ public class WordWatermarkTests {
         }
     }
 
+    /**
+     * 原样复制未修改的部件（文档中的图片不重新压缩）
+     */
+    @Test
+    public void testSetRawCopyImageWatermark() throws IOException, InvalidFormatException {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(0);
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", imageStream);
+
+        ByteArrayOutputStream wordStream = new ByteArrayOutputStream();
+        try (XWPFDocument doc = new XWPFDocument()) {
+            XWPFRun run = doc.createParagraph().createRun();
+            run.setText("正文");
+            run.addPicture(new ByteArrayInputStream(imageStream.toByteArray()), Document.PICTURE_TYPE_PNG,
+                    "image.png", Units.toEMU(200), Units.toEMU(200));
+            doc.write(wordStream);
+        }
+
+        ImageWatermark watermark = createImageWatermark(new RepeatWatermarkStyle());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WordWatermarkCreator watermarkCreator = new WordWatermarkCreator()) {
+            watermarkCreator.setRawCopy(true);
+            watermarkCreator.create(new ByteArrayInputStream(wordStream.toByteArray()), outputStream, watermark);
+        }
+
+        try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals("正文", doc.getParagraphs().get(0).getText());
+            Assertions.assertEquals(1, doc.getHeaderList().size());
+            Assertions.assertEquals(1, doc.getHeaderList().get(0).getAllPictures().size());
+            Assertions.assertEquals(2, doc.getAllPackagePictures().size());
+        }
+        // 文档中的图片按压缩数据原样复制
+        try (ZipFile original = new ZipFile(new SeekableInMemoryByteChannel(wordStream.toByteArray()));
+             ZipFile watermarked = new ZipFile(new SeekableInMemoryByteChannel(outputStream.toByteArray()))) {
+            String imagePartName = "word/media/image1.png";
+            Assertions.assertArrayEquals(IoUtil.readBytes(original.getRawInputStream(original.getEntry(imagePartName))),
+                    IoUtil.readBytes(watermarked.getRawInputStream(watermarked.getEntry(imagePartName))));
+        }
+    }
+
+    /**
+     * 重复水印绘制为一张图片，添加到所有节的页眉中
+     */
+    @Test
+    public void testSetHeaderImageRepeatImageWatermark() throws IOException {
+        ByteArrayOutputStream wordStream = new ByteArrayOutputStream();
+        try (XWPFDocument doc = new XWPFDocument()) {
+            // 第二节（最后一节）有自己的页眉，第一节没有页眉
+            doc.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("页眉");
+            XWPFParagraph paragraph = doc.createParagraph();
+            paragraph.createRun().setText("第一节");
+            paragraph.getCTP().addNewPPr().addNewSectPr();
+            doc.createParagraph().createRun().setText("第二节");
+            doc.write(wordStream);
+        }
+
+        RepeatWatermarkStyle watermarkStyle = new RepeatWatermarkStyle();
+        watermarkStyle.setRows(3);
+        watermarkStyle.setCols(3);
+        ImageWatermark watermark = createImageWatermark(watermarkStyle);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WordWatermarkCreator watermarkCreator = new WordWatermarkCreator(WordWatermarkCreator.RepeatMode.HEADER_IMAGE)) {
+            watermarkCreator.create(new ByteArrayInputStream(wordStream.toByteArray()), outputStream, watermark);
+        }
+
+        try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(2, doc.getHeaderList().size());
+            for (XWPFHeader header : doc.getHeaderList()) {
+                Assertions.assertEquals(1, header.getAllPictures().size());
+            }
+            // 各页眉共用一个图片部件
+            Assertions.assertEquals(1, doc.getAllPackagePictures().size());
+            // 第一节的首页、奇数页和偶数页都引用新建的页眉
+            Assertions.assertEquals(3, doc.getParagraphs().get(0).getCTP().getPPr().getSectPr().sizeOfHeaderReferenceArray());
+            Assertions.assertEquals("页眉", doc.getHeaderList().get(0).getText().trim());
+            assertUniqueDrawingIds(doc, 2);
+        }
+    }
+
+    /**
+     * 图层水印添加到每页开头（文档开头、段前分页、分页符之后、新页开始的节中的表格），图片只添加一次
+     */
+    @Test
+    public void testSetLayerImageWatermark() throws IOException {
+        ByteArrayOutputStream wordStream = new ByteArrayOutputStream();
+        try (XWPFDocument doc = new XWPFDocument()) {
+            doc.createParagraph().createRun().setText("第一页");
+            XWPFParagraph paragraph = doc.createParagraph();
+            paragraph.setPageBreak(true);
+            paragraph.createRun().setText("第二页");
+            paragraph = doc.createParagraph();
+            XWPFRun run = paragraph.createRun();
+            run.setText("第二页");
+            run.addBreak(BreakType.PAGE);
+            run.setText("第三页");
+            paragraph.getCTP().addNewPPr().addNewSectPr();
+            doc.createTable(1, 1).getRow(0).getCell(0).setText("第四页");
+            doc.write(wordStream);
+        }
+
+        ImageWatermark watermark = createImageWatermark(new PositionWatermarkStyle());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WordLayerWatermarkCreator watermarkCreator = new WordLayerWatermarkCreator()) {
+            watermarkCreator.create(new ByteArrayInputStream(wordStream.toByteArray()), outputStream, watermark);
+        }
+
+        try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(1, doc.getAllPackagePictures().size());
+            List<XWPFParagraph> paragraphs = new ArrayList<>(doc.getParagraphs());
+            paragraphs.addAll(doc.getTables().get(0).getRow(0).getCell(0).getParagraphs());
+            int pictures = 0;
+            for (XWPFParagraph paragraph : paragraphs) {
+                for (XWPFRun run : paragraph.getRuns()) {
+                    pictures += run.getEmbeddedPictures().size();
+                }
+            }
+            Assertions.assertEquals(4, pictures);
+            Assertions.assertEquals("第一页", doc.getParagraphs().get(0).getText());
+            Assertions.assertEquals("第四页", doc.getTables().get(0).getRow(0).getCell(0).getText());
+        }
+    }
+
+    /**
+     * 图层水印添加到所有节的页眉中，正文不变
+     */
+    @Test
+    public void testSetSectionHeaderLayerImageWatermark() throws IOException, InvalidFormatException {
+        ByteArrayOutputStream wordStream = new ByteArrayOutputStream();
+        try (XWPFDocument doc = new XWPFDocument()) {
+            doc.createHeader(HeaderFooterType.FIRST).createParagraph().createRun().setText("首页页眉");
+            XWPFParagraph paragraph = doc.createParagraph();
+            paragraph.createRun().setText("第一节");
+            paragraph.getCTP().addNewPPr().addNewSectPr();
+            // 已有图片的绘图对象 ID 与下一个图片名称编号相同
+            XWPFRun run = doc.createParagraph().createRun();
+            run.setText("第二节");
+            ByteArrayOutputStream imageStream = new ByteArrayOutputStream();
+            ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png", imageStream);
+            run.addPicture(new ByteArrayInputStream(imageStream.toByteArray()), Document.PICTURE_TYPE_PNG,
+                    "image.png", Units.toEMU(10), Units.toEMU(10));
+            run.getCTR().getDrawingArray(0).getInlineArray(0).getDocPr().setId(doc.getNextPicNameNumber(Document.PICTURE_TYPE_PNG));
+            doc.write(wordStream);
+        }
+
+        ImageWatermark watermark = createImageWatermark(new PositionWatermarkStyle());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (WordLayerWatermarkCreator watermarkCreator = new WordLayerWatermarkCreator(WordLayerWatermarkCreator.PlacementMode.SECTION_HEADERS)) {
+            watermarkCreator.create(new ByteArrayInputStream(wordStream.toByteArray()), outputStream, watermark);
+        }
+
+        try (XWPFDocument doc = new XWPFDocument(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assertions.assertEquals(2, doc.getHeaderList().size());
+            for (XWPFHeader header : doc.getHeaderList()) {
+                Assertions.assertEquals(1, header.getAllPictures().size());
+            }
+            Assertions.assertEquals(2, doc.getAllPackagePictures().size());
+            for (XWPFParagraph paragraph : doc.getParagraphs()) {
+                Assertions.assertEquals(1, paragraph.getRuns().size());
+            }
+            assertUniqueDrawingIds(doc, 3);
+        }
+    }
+
+    /**
+     * .doc 文件不支持添加水印
+     */
+    @Test
+    public void testSetWatermarkForDoc() throws IOException {
+        ByteArrayOutputStream docStream = new ByteArrayOutputStream();
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem()) {
+            fileSystem.createDocument(new ByteArrayInputStream(new byte[512]), "WordDocument");
+            fileSystem.writeFilesystem(docStream);
+        }
+
+        TextWatermark watermark = new TextWatermark();
+        watermark.setText("禁止复制");
+        watermark.setStyle(new RepeatWatermarkStyle());
+        try (WordWatermarkCreator watermarkCreator = new WordWatermarkCreator()) {
+            Assertions.assertThrows(WatermarkException.class, () -> watermarkCreator.create(
+                    new ByteArrayInputStream(docStream.toByteArray()), new ByteArrayOutputStream(), watermark));
+        }
+    }
+
+    /*
+     * 正文和页眉中的绘图对象数量为 drawings，且 ID（wp:docPr/@id）不重复
+     */
+    private void assertUniqueDrawingIds(XWPFDocument doc, int drawings) {
+        List<XmlObject> parts = new ArrayList<>();
+        parts.add(doc.getDocument());
+        doc.getHeaderList().forEach(header -> parts.add(header._getHdrFtr()));
+        List<Long> drawingIds = new ArrayList<>();
+        for (XmlObject part : parts) {
+            for (XmlObject docPr : part.selectPath("declare namespace wp='"
+                    + CTAnchor.type.getName().getNamespaceURI() + "' .//wp:docPr")) {
+                drawingIds.add(((CTNonVisualDrawingProps) docPr).getId());
+            }
+        }
+        Assertions.assertEquals(drawings, drawingIds.size());
+        Assertions.assertEquals(drawings, new HashSet<>(drawingIds).size(), drawingIds.toString());
+    }
+
+    /*
+     * 创建 100x40 的透明 PNG 图片水印
+     */
+    private ImageWatermark createImageWatermark(WatermarkStyle watermarkStyle) throws IOException {
+        ByteArrayOutputStream watermarkStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(100, 40, BufferedImage.TYPE_INT_ARGB), "png", watermarkStream);
+        ImageWatermark watermark = new ImageWatermark(new ByteArrayInputStream(watermarkStream.toByteArray()));
+        watermark.setWidth(100);
+        watermark.setHeight(40);
+        watermark.setStyle(watermarkStyle);
+        return watermark;
+    }
+
 }